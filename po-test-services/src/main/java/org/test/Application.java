@@ -2,12 +2,10 @@ package org.test;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
 
 /**
  * Entry point to bootstrap the application.
  */
-@EnableAsync
 @SpringBootApplication
 public class Application {
 
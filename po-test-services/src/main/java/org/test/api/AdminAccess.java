@@ -0,0 +1,54 @@
+package org.test.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Component controlling access to the admin API.
+ * <p/>
+ * The admin API exposes the contents of received orders, so it is disabled by default and, when enabled, requires the
+ * configured token to be passed in the X-Admin-Token header.
+ */
+@Component
+public class AdminAccess {
+
+    /** The header carrying the admin token. */
+    public static final String TOKEN_HEADER = "X-Admin-Token";
+
+    @Value("${admin.enabled:false}")
+    private boolean enabled;
+    @Value("${admin.token:}")
+    private String token;
+
+    /**
+     * Validate the configuration.
+     */
+    @PostConstruct
+    public void init() {
+        if (enabled && (token == null || token.isBlank())) {
+            throw new IllegalStateException("An admin token must be configured when the admin API is enabled.");
+        }
+    }
+
+    /**
+     * Check that a call to the admin API is allowed.
+     *
+     * @param providedToken The token provided with the call (may be null).
+     * @throws ResponseStatusException With a 404 status if the admin API is disabled, or a 403 status if the token
+     * does not match.
+     */
+    public void checkAccess(String providedToken) {
+        if (!enabled) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        } else if (providedToken == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), providedToken.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.test.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.test.gitb.StateSnapshotProvider;
+import org.test.metrics.Metrics;
+import org.test.state.PendingReceiveStep;
+import org.test.state.StateSnapshot;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of the read-only admin REST API to inspect the service's state.
+ * <p/>
+ * All results are served from shared state snapshots (see StateSnapshotProvider), so that polling this API does not
+ * contend with the processing of SUT messages and test bed calls. Access is controlled by AdminAccess.
+ */
+@RestController
+@RequestMapping(path = "/api/admin", produces = MediaType.APPLICATION_JSON_VALUE)
+public class AdminServer {
+
+    /** The maximum page size. */
+    private static final int MAX_PAGE_SIZE = 500;
+
+    @Autowired
+    private StateSnapshotProvider snapshotProvider = null;
+    @Autowired
+    private Metrics metrics = null;
+    @Autowired
+    private AdminAccess adminAccess = null;
+
+    @GetMapping(path = "/sessions")
+    public Page<SessionSummary> getSessions(@RequestHeader(name = AdminAccess.TOKEN_HEADER, required = false) String token,
+                                            @RequestParam(name = "sessionId", required = false) String sessionId,
+                                            @RequestParam(name = "page", defaultValue = "0") int page,
+                                            @RequestParam(name = "size", defaultValue = "50") int size) {
+        var snapshot = getSnapshot(token);
+        return toPage(snapshot, page, size, snapshot.sessions().stream()
+                .filter(session -> sessionId == null || session.sessionId().equals(sessionId))
+                .map(session -> new SessionSummary(session.sessionId(), session.callbackURL(), session.pendingSteps().size())));
+    }
+
+    @GetMapping(path = "/pendingSteps")
+    public Page<PendingReceiveStep> getPendingSteps(@RequestHeader(name = AdminAccess.TOKEN_HEADER, required = false) String token,
+                                                    @RequestParam(name = "vatNumber", required = false) String vatNumber,
+                                                    @RequestParam(name = "sessionId", required = false) String sessionId,
+                                                    @RequestParam(name = "page", defaultValue = "0") int page,
+                                                    @RequestParam(name = "size", defaultValue = "50") int size) {
+        var snapshot = getSnapshot(token);
+        Predicate<String> vatNumberFilter = vatNumberFilter(vatNumber);
+        return toPage(snapshot, page, size, snapshot.sessions().stream()
+                .filter(session -> sessionId == null || session.sessionId().equals(sessionId))
+                .flatMap(session -> session.pendingSteps().stream())
+                .filter(step -> vatNumberFilter.test(step.vatNumber())));
+    }
+
+    @GetMapping(path = "/sutMessages")
+    public Page<MessageSummary> getSutMessages(@RequestHeader(name = AdminAccess.TOKEN_HEADER, required = false) String token,
+                                               @RequestParam(name = "vatNumber", required = false) String vatNumber,
+                                               @RequestParam(name = "includeContent", defaultValue = "false") boolean includeContent,
+                                               @RequestParam(name = "page", defaultValue = "0") int page,
+                                               @RequestParam(name = "size", defaultValue = "50") int size) {
+        var snapshot = getSnapshot(token);
+        Predicate<String> vatNumberFilter = vatNumberFilter(vatNumber);
+        return toPage(snapshot, page, size, snapshot.sutMessages().stream()
+                .filter(message -> vatNumberFilter.test(message.vatNumber()))
+                .map(message -> new MessageSummary(message.vatNumber(), message.content().length(), includeContent ? message.content() : null)));
+    }
+
+    @GetMapping(path = "/vatNumbers")
+    public Page<VatNumberSummary> getVatNumbers(@RequestHeader(name = AdminAccess.TOKEN_HEADER, required = false) String token,
+                                                @RequestParam(name = "page", defaultValue = "0") int page,
+                                                @RequestParam(name = "size", defaultValue = "50") int size) {
+        var snapshot = getSnapshot(token);
+        Map<String, long[]> counts = new TreeMap<>();
+        snapshot.sessions().forEach(session -> session.pendingSteps().forEach(step -> counts.computeIfAbsent(step.vatNumber().toLowerCase(Locale.ROOT), key -> new long[2])[0]++));
+        snapshot.sutMessages().forEach(message -> counts.computeIfAbsent(message.vatNumber().toLowerCase(Locale.ROOT), key -> new long[2])[1]++);
+        return toPage(snapshot, page, size, counts.entrySet().stream()
+                .map(entry -> new VatNumberSummary(entry.getKey(), entry.getValue()[0], entry.getValue()[1])));
+    }
+
+    @GetMapping(path = "/metrics")
+    public Map<String, Long> getMetrics(@RequestHeader(name = AdminAccess.TOKEN_HEADER, required = false) String token) {
+        adminAccess.checkAccess(token);
+        return metrics.getCounters();
+    }
+
+    /**
+     * Get the state snapshot to serve results from.
+     *
+     * @param token The admin token provided with the call.
+     * @return The snapshot.
+     */
+    private StateSnapshot getSnapshot(String token) {
+        adminAccess.checkAccess(token);
+        return snapshotProvider.get();
+    }
+
+    /**
+     * Create a filter matching VAT numbers in a case-insensitive way (as done when matching messages to steps).
+     *
+     * @param vatNumber The VAT number to match (null to match all).
+     * @return The filter.
+     */
+    private Predicate<String> vatNumberFilter(String vatNumber) {
+        return value -> vatNumber == null || vatNumber.equalsIgnoreCase(value);
+    }
+
+    /**
+     * Collect the requested page of items.
+     *
+     * @param snapshot The snapshot the items come from.
+     * @param page The page number (starting from zero).
+     * @param size The page size.
+     * @param items The items to page.
+     * @return The page.
+     * @param <T> The type of items.
+     */
+    private <T> Page<T> toPage(StateSnapshot snapshot, int page, int size, Stream<T> items) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("The page must be positive and the size between 1 and %s.", MAX_PAGE_SIZE));
+        }
+        List<T> allItems = items.toList();
+        List<T> pageItems = allItems.stream().skip((long) page * size).limit(size).toList();
+        return new Page<>(page, size, allItems.size(), snapshot.version(), snapshot.takenAt(), pageItems);
+    }
+
+    /**
+     * Summary of an active session.
+     *
+     * @param sessionId The test session identifier.
+     * @param callbackURL The Test Bed's callback address.
+     * @param pendingSteps The number of pending 'receive' steps.
+     */
+    public record SessionSummary(String sessionId, String callbackURL, int pendingSteps) {
+    }
+
+    /**
+     * Summary of a parked SUT message.
+     *
+     * @param vatNumber The relevant VAT number.
+     * @param length The length of the message's content.
+     * @param content The message's content (null unless requested).
+     */
+    public record MessageSummary(String vatNumber, int length, String content) {
+    }
+
+    /**
+     * Summary of the state relevant to a VAT number.
+     *
+     * @param vatNumber The VAT number (in lower case).
+     * @param pendingSteps The number of pending 'receive' steps.
+     * @param sutMessages The number of parked SUT messages.
+     */
+    public record VatNumberSummary(String vatNumber, long pendingSteps, long sutMessages) {
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.test.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.test.cluster.ClusterClient;
+import org.test.cluster.ClusterConfig;
+import org.test.cluster.ClusterMember;
+import org.test.cluster.ClusterRouter;
+import org.test.gitb.StateManager;
+import org.test.state.PendingReceiveStep;
+import org.test.state.SutMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Implementation of the internal REST API used by cluster members to forward state to each other.
+ * <p/>
+ * Calls received through this API are always handled locally, as they have already been routed by the calling member.
+ * The API is only available when the cluster mode is enabled.
+ */
+@RestController
+@RequestMapping(path = ClusterClient.BASE_PATH, produces = MediaType.APPLICATION_JSON_VALUE)
+public class ClusterServer {
+
+    @Autowired
+    private ClusterConfig config = null;
+    @Autowired
+    private ClusterRouter clusterRouter = null;
+    @Autowired
+    private StateManager stateManager = null;
+
+    @PostMapping(path = "/sessions", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void createSession(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret, @RequestBody ClusterRouter.SessionInfo session) {
+        checkAccess(secret);
+        stateManager.ensureSession(session.sessionId(), session.callbackURL());
+    }
+
+    @PostMapping(path = "/sessions/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void createSessions(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret, @RequestBody List<ClusterRouter.SessionInfo> sessions) {
+        checkAccess(secret);
+        sessions.forEach(session -> stateManager.ensureSession(session.sessionId(), session.callbackURL()));
+    }
+
+    @DeleteMapping(path = "/sessions/{sessionId}")
+    public void destroySession(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret, @PathVariable("sessionId") String sessionId) {
+        checkAccess(secret);
+        stateManager.destroySession(sessionId);
+    }
+
+    @PostMapping(path = "/sutMessages", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void handleSutMessage(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret, @RequestBody SutMessage message) {
+        checkAccess(secret);
+        stateManager.handleSutMessage(message);
+    }
+
+    @PostMapping(path = "/receiveSteps", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void handleReceiveStep(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret, @RequestBody PendingReceiveStep step) {
+        checkAccess(secret);
+        stateManager.handleReceiveStep(step);
+    }
+
+    @GetMapping(path = "/members")
+    public List<ClusterMember> getMembers(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+        checkAccess(secret);
+        return clusterRouter.getMembers();
+    }
+
+    @GetMapping(path = "/node")
+    public ClusterRouter.NodeInfo getNode(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+        checkAccess(secret);
+        return new ClusterRouter.NodeInfo(config.getNodeId(), config.getNodeNumber());
+    }
+
+    @PutMapping(path = "/members", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void updateMembers(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret, @RequestBody List<ClusterMember> members, @RequestParam(name = "propagate", defaultValue = "true") boolean propagate) {
+        checkAccess(secret);
+        if (members.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A cluster must have at least one member.");
+        }
+        try {
+            clusterRouter.updateMembers(members, propagate);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Check that the API is enabled and that the caller provided the cluster's shared secret.
+     * <p/>
+     * The secret is required when the cluster mode is enabled (see ClusterRouter), and compared in constant time.
+     *
+     * @param secret The secret provided by the caller.
+     */
+    private void checkAccess(String secret) {
+        if (!config.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        } else if (secret == null || config.getSecret().isBlank() || !MessageDigest.isEqual(config.getSecret().getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.test.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded, time-windowed record of keys used to detect duplicate submissions.
+ * <p/>
+ * Entries are kept in the order they were first seen and all share the same window, so that expired entries are
+ * always at the head of the map. Lookups, insertions and evictions are therefore constant-time. A duplicate does not
+ * extend the window of the original entry, so that a client retrying forever is eventually accepted again. When the
+ * number of entries exceeds its limit, the oldest entries are discarded before they expire.
+ */
+public class DedupWindow {
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final long windowNanos;
+    private final int maxEntries;
+
+    /**
+     * Constructor.
+     *
+     * @param windowMillis The time in milliseconds during which a key is remembered.
+     * @param maxEntries The maximum number of remembered keys.
+     */
+    public DedupWindow(long windowMillis, int maxEntries) {
+        if (windowMillis <= 0 || maxEntries < 1) {
+            throw new IllegalArgumentException("Deduplication requires a positive window and at least 1 entry.");
+        }
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Record a key unless it was already recorded within the window.
+     *
+     * @param key The key.
+     * @param idGenerator The generator of the identifier to record for the key (only called if the key is recorded).
+     * @param contentHash The hash of the content submitted with the key.
+     * @param now The current time (as per System.nanoTime).
+     * @return The entry recorded for the key, either now or (for duplicates) previously.
+     */
+    public synchronized Recorded putIfAbsent(String key, LongSupplier idGenerator, String contentHash, long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && iterator.next().expiresAt() - now <= 0) {
+            iterator.remove();
+        }
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            return new Recorded(existing, true);
+        }
+        Entry entry = new Entry(idGenerator.getAsLong(), contentHash, now + windowNanos);
+        entries.put(key, entry);
+        if (entries.size() > maxEntries) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return new Recorded(entry, false);
+    }
+
+    /**
+     * Forget a key recorded for a submission that could not be processed, so that retries are processed again.
+     * <p/>
+     * The key is only removed if it is still recorded for the same identifier (and not for a later submission).
+     *
+     * @param key The key.
+     * @param id The identifier recorded for the key.
+     */
+    public synchronized void remove(String key, long id) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.id() == id) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Information recorded for a key.
+     *
+     * @param id The identifier of the original submission.
+     * @param contentHash The hash of the original submission's content.
+     * @param expiresAt The time (as per System.nanoTime) at which the entry expires.
+     */
+    public record Entry(long id, String contentHash, long expiresAt) {
+    }
+
+    /**
+     * The result of recording a key.
+     *
+     * @param entry The entry recorded for the key.
+     * @param duplicate Whether the entry was recorded for a previous submission.
+     */
+    public record Recorded(Entry entry, boolean duplicate) {
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.test.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.test.metrics.Metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Component used to limit the rate at which SUTs can submit messages.
+ * <p/>
+ * Limits are enforced per client address and per VAT number, so that a single misbehaving SUT cannot flood the
+ * service's state and degrade other tests. Rejections are counted in the service's metrics.
+ */
+@Component
+public class IngestionRateLimiter {
+
+    @Value("${rateLimit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${rateLimit.vatNumber.rate:50}")
+    private double vatNumberRate;
+
+    @Value("${rateLimit.vatNumber.burst:100}")
+    private int vatNumberBurst;
+
+    @Value("${rateLimit.client.rate:100}")
+    private double clientRate;
+
+    @Value("${rateLimit.client.burst:200}")
+    private int clientBurst;
+
+    @Value("${rateLimit.maxTrackedKeys:10000}")
+    private int maxTrackedKeys;
+
+    @Autowired
+    private Metrics metrics = null;
+
+    private TokenBuckets vatNumberBuckets;
+    private TokenBuckets clientBuckets;
+
+    /**
+     * Create the token buckets from the configuration.
+     */
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            vatNumberBuckets = new TokenBuckets(vatNumberRate, vatNumberBurst, maxTrackedKeys);
+            clientBuckets = new TokenBuckets(clientRate, clientBurst, maxTrackedKeys);
+        }
+    }
+
+    /**
+     * Check whether a message from the given client for the given VAT number can be accepted.
+     *
+     * @param clientAddress The client's address.
+     * @param vatNumber The message's VAT number.
+     * @return Zero if the message is accepted, otherwise the number of seconds after which to retry.
+     */
+    public long check(String clientAddress, String vatNumber) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        // VAT numbers are matched case-insensitively, so they share a bucket regardless of case.
+        String vatNumberKey = vatNumber.toLowerCase(Locale.ROOT);
+        // Check both buckets before taking any token, so that a rejected message does not consume the other limit.
+        long wait = clientBuckets.peek(clientAddress, now);
+        if (wait > 0) {
+            metrics.increment("receiveOrder.rejected.client");
+            return toRetryAfter(wait);
+        }
+        wait = vatNumberBuckets.peek(vatNumberKey, now);
+        if (wait > 0) {
+            metrics.increment("receiveOrder.rejected.vatNumber");
+            return toRetryAfter(wait);
+        }
+        wait = clientBuckets.tryAcquire(clientAddress, now);
+        if (wait > 0) {
+            metrics.increment("receiveOrder.rejected.client");
+            return toRetryAfter(wait);
+        }
+        wait = vatNumberBuckets.tryAcquire(vatNumberKey, now);
+        if (wait > 0) {
+            // Concurrent messages emptied the VAT number's bucket since it was checked.
+            clientBuckets.release(clientAddress);
+            metrics.increment("receiveOrder.rejected.vatNumber");
+            return toRetryAfter(wait);
+        }
+        return 0;
+    }
+
+    /**
+     * Convert a wait time to the value of a Retry-After header.
+     *
+     * @param waitNanos The wait time in nanoseconds.
+     * @return The wait time in whole seconds (at least 1).
+     */
+    private long toRetryAfter(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.test.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.test.metrics.Metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Component used to detect orders resubmitted by SUTs (typically retries following timeouts).
+ * <p/>
+ * An order is identified by its VAT number and Idempotency-Key header. Orders without this header can optionally be
+ * identified by the hash of their content instead. A duplicate received within the deduplication window is not
+ * processed again, and is answered with the reference returned for the original order. Identifiers are only generated
+ * for orders that are not duplicates. Duplicates are counted in the
+ * service's metrics. An order that fails to be processed is unregistered, so that its retries are processed.
+ * <p/>
+ * Orders are deduplicated on the member receiving them, so in cluster mode retries are only detected if they reach
+ * the same member.
+ */
+@Component
+public class OrderDeduplicator {
+
+    @Value("${dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dedup.contentHash:false}")
+    private boolean contentHash;
+
+    @Value("${dedup.window:300000}")
+    private long window;
+
+    @Value("${dedup.maxEntries:10000}")
+    private int maxEntries;
+
+    @Autowired
+    private Metrics metrics = null;
+
+    private DedupWindow entries;
+
+    /**
+     * Create the deduplication window from the configuration.
+     */
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            entries = new DedupWindow(window, maxEntries);
+        }
+    }
+
+    /**
+     * Register an order, checking whether it duplicates a previous one.
+     *
+     * @param vatNumber The order's VAT number.
+     * @param idempotencyKey The order's idempotency key (null if not provided).
+     * @param content The order's content.
+     * @param idGenerator The generator of the order's identifier (only called if the order is not a duplicate).
+     * @return The registration, identifying the order or (for duplicates) the original order.
+     */
+    public Registration register(String vatNumber, String idempotencyKey, String content, LongSupplier idGenerator) {
+        if (!enabled || (idempotencyKey == null && !contentHash)) {
+            return new Registration(idGenerator.getAsLong(), false, false);
+        }
+        String contentDigest = digest(content);
+        DedupWindow.Recorded recorded = entries.putIfAbsent(toKey(vatNumber, idempotencyKey, contentDigest), idGenerator, contentDigest, System.nanoTime());
+        if (!recorded.duplicate()) {
+            return new Registration(recorded.entry().id(), false, false);
+        }
+        boolean conflicting = !recorded.entry().contentHash().equals(contentDigest);
+        metrics.increment(conflicting ? "receiveOrder.duplicate.conflicting" : "receiveOrder.duplicate");
+        return new Registration(recorded.entry().id(), true, conflicting);
+    }
+
+    /**
+     * Unregister an order that could not be processed, so that its retries are not treated as duplicates.
+     *
+     * @param vatNumber The order's VAT number.
+     * @param idempotencyKey The order's idempotency key (null if not provided).
+     * @param content The order's content.
+     * @param id The identifier the order was registered with.
+     */
+    public void unregister(String vatNumber, String idempotencyKey, String content, long id) {
+        if (!enabled || (idempotencyKey == null && !contentHash)) {
+            return;
+        }
+        entries.remove(toKey(vatNumber, idempotencyKey, digest(content)), id);
+    }
+
+    /**
+     * Determine the key identifying an order.
+     *
+     * @param vatNumber The order's VAT number.
+     * @param idempotencyKey The order's idempotency key (null if not provided).
+     * @param contentDigest The digest of the order's content.
+     * @return The key.
+     */
+    private String toKey(String vatNumber, String idempotencyKey, String contentDigest) {
+        // VAT numbers are matched case-insensitively, so they share keys regardless of case.
+        return vatNumber.toLowerCase(Locale.ROOT) + (idempotencyKey == null ? "#" + contentDigest : ":" + digest(idempotencyKey));
+    }
+
+    /**
+     * Calculate the SHA-256 digest of a text.
+     *
+     * @param text The text.
+     * @return The Base64-encoded digest.
+     */
+    private String digest(String text) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Information on a registered order.
+     *
+     * @param id The order's identifier (for duplicates, the identifier of the original order).
+     * @param duplicate Whether the order duplicates a previous one.
+     * @param conflicting Whether the order reused the original's idempotency key with different content.
+     */
+    public record Registration(long id, boolean duplicate, boolean conflicting) {
+    }
+
+}
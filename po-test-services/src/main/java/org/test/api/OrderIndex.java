@@ -0,0 +1,107 @@
+package org.test.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.test.state.ReceivedOrder;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Component used to look up the orders received by this node from their references.
+ * <p/>
+ * Orders are held in a concurrent map keyed by their numeric identifier, so that recording and looking up orders are
+ * constant-time and do not contend with each other. The index is bounded: the identifiers of recorded orders are also
+ * written to a ring of slots claimed with an atomic counter, and recording an order discards the oldest order whose
+ * slot it reuses.
+ * <p/>
+ * The memory used for contents is bounded per order (longer contents are truncated) and in total: the lengths of the
+ * retained contents are summed with an atomic counter, and orders recorded while the total limit is reached are
+ * indexed without their content until older orders are discarded.
+ */
+@Component
+public class OrderIndex {
+
+    @Value("${orders.index.size:10000}")
+    private int size;
+
+    @Value("${orders.index.maxContentLength:65536}")
+    private int maxContentLength;
+
+    @Value("${orders.index.maxTotalContentLength:8388608}")
+    private long maxTotalContentLength;
+
+    private final ConcurrentHashMap<Long, ReceivedOrder> orders = new ConcurrentHashMap<>();
+    /** The total length of the contents currently retained. */
+    private final AtomicLong retainedContentLength = new AtomicLong();
+    private final AtomicLong cursor = new AtomicLong();
+    private AtomicLongArray slots;
+
+    /**
+     * Create the ring of slots from the configuration.
+     */
+    @PostConstruct
+    public void init() {
+        if (size > 0) {
+            // Identifiers are always positive, so zero marks an empty slot.
+            slots = new AtomicLongArray(size);
+        }
+    }
+
+    /**
+     * Record a received order.
+     *
+     * @param id The order's identifier.
+     * @param reference The order's reference.
+     * @param vatNumber The order's VAT number.
+     * @param clientAddress The address of the SUT that sent the order.
+     * @param content The order's content.
+     */
+    public void add(long id, String reference, String vatNumber, String clientAddress, String content) {
+        if (slots == null) {
+            return;
+        }
+        int slot = (int) (cursor.getAndIncrement() % size);
+        long evicted = slots.getAndSet(slot, id);
+        if (evicted != 0) {
+            discard(evicted);
+        }
+        String storedContent = content.length() > maxContentLength ? content.substring(0, maxContentLength) : content;
+        if (retainedContentLength.addAndGet(storedContent.length()) > maxTotalContentLength) {
+            // The limit is used up by the contents of older orders.
+            retainedContentLength.addAndGet(-storedContent.length());
+            storedContent = null;
+        }
+        orders.put(id, new ReceivedOrder(reference, vatNumber, clientAddress, Instant.now(), content.length(), storedContent));
+        if (slots.get(slot) != id) {
+            // Newer orders reused the slot while this order was being recorded.
+            discard(id);
+        }
+    }
+
+    /**
+     * Discard an indexed order.
+     *
+     * @param id The order's identifier.
+     */
+    private void discard(long id) {
+        ReceivedOrder order = orders.remove(id);
+        if (order != null && order.content() != null) {
+            retainedContentLength.addAndGet(-order.content().length());
+        }
+    }
+
+    /**
+     * Look up a received order.
+     *
+     * @param id The order's identifier.
+     * @return The order (null if unknown or no longer indexed).
+     */
+    public ReceivedOrder get(long id) {
+        return orders.get(id);
+    }
+
+}
@@ -0,0 +1,18 @@
+package org.test.api;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A page of results returned by the admin API.
+ *
+ * @param page The page number (starting from zero).
+ * @param size The maximum number of items per page.
+ * @param total The total number of items matching the request's filters.
+ * @param version The state version the results were taken from.
+ * @param takenAt The time the results' state snapshot was taken.
+ * @param items The page's items.
+ * @param <T> The type of items.
+ */
+public record Page<T>(int page, int size, long total, long version, Instant takenAt, List<T> items) {
+}
@@ -1,30 +1,121 @@
 package org.test.api;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.test.gitb.StateManager;
+import org.springframework.web.server.ResponseStatusException;
+import org.test.cluster.ClusterMember;
+import org.test.cluster.ClusterRouter;
+import org.test.metrics.Metrics;
+import org.test.state.ReceivedOrder;
 import org.test.state.SutMessage;
 
+import java.net.URI;
+
 /**
  * Implementation of the Purchase Order REST API to receive messages from SUTs.
+ * <p/>
+ * Each received order is answered with a unique reference (see ReferenceGenerator) through which it can later be
+ * looked up (see OrderIndex). Lookups expose the orders' contents, so they are restricted as the admin API (see
+ * AdminAccess). In cluster mode, lookups for orders received by other members are redirected to them.
+ * <p/>
+ * SUTs may provide an Idempotency-Key header so that retried orders are answered with the original order's reference
+ * without being processed again (see OrderDeduplicator).
  */
 @RestController
 public class PurchaseOrderServer {
 
     private static final Logger LOG = LoggerFactory.getLogger(PurchaseOrderServer.class);
 
+    /** The header identifying a SUT's order across retries. */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    /** The header flagging responses returned for duplicate orders. */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
     @Autowired
-    private StateManager stateManager = null;
+    private ClusterRouter clusterRouter = null;
+
+    @Autowired
+    private IngestionRateLimiter rateLimiter = null;
+    @Autowired
+    private OrderDeduplicator deduplicator = null;
+    @Autowired
+    private ReferenceGenerator referenceGenerator = null;
+    @Autowired
+    private OrderIndex orderIndex = null;
+    @Autowired
+    private AdminAccess adminAccess = null;
+    @Autowired
+    private Metrics metrics = null;
 
     @ResponseBody
     @PostMapping(path = "/api/{vatNumber}/receiveOrder", produces = MediaType.TEXT_PLAIN_VALUE)
-    public String receiveOrder(@PathVariable("vatNumber") String vatNumber, @RequestBody String content) {
+    public ResponseEntity<String> receiveOrder(@PathVariable("vatNumber") String vatNumber, @RequestBody String content,
+                                               @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                               HttpServletRequest request) {
         LOG.info("Received call for VAT number [{}]", vatNumber);
-        stateManager.handleSutMessage(new SutMessage(vatNumber, content));
-        return "REF-0123456789";
+        // Reject the message before it reaches the shared state if its client or VAT number exceeded their rate.
+        long retryAfter = rateLimiter.check(request.getRemoteAddr(), vatNumber);
+        if (retryAfter > 0) {
+            // Rejections are counted in the metrics; logging each of them at a higher level would flood the log.
+            LOG.debug("Rejecting call for VAT number [{}] from [{}] due to rate limiting", vatNumber, request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body("Too many requests");
+        }
+        // Answer retried orders with their original reference without adding them again to the shared state.
+        OrderDeduplicator.Registration registration = deduplicator.register(vatNumber, idempotencyKey, content, referenceGenerator::nextId);
+        String reference = referenceGenerator.toReference(registration.id());
+        if (registration.duplicate()) {
+            if (registration.conflicting()) {
+                LOG.warn("Rejecting call for VAT number [{}] reusing an idempotency key with different content", vatNumber);
+                return ResponseEntity.unprocessableEntity().body("Idempotency key reused with different content");
+            }
+            LOG.info("Ignoring duplicate call for VAT number [{}]", vatNumber);
+            return ResponseEntity.ok().header(REPLAYED_HEADER, "true").body(reference);
+        }
+        try {
+            clusterRouter.handleSutMessage(new SutMessage(vatNumber, content));
+        } catch (IllegalStateException e) {
+            // The member owning the VAT number could not be reached - let retries of the order be processed.
+            LOG.warn("Unable to deliver call for VAT number [{}]", vatNumber, e);
+            deduplicator.unregister(vatNumber, idempotencyKey, content, registration.id());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Unable to deliver the order");
+        }
+        metrics.increment("receiveOrder.accepted");
+        orderIndex.add(registration.id(), reference, vatNumber, request.getRemoteAddr(), content);
+        return ResponseEntity.ok(reference);
+    }
+
+    @GetMapping(path = "/api/orders/{reference}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ReceivedOrder> getOrder(@RequestHeader(name = AdminAccess.TOKEN_HEADER, required = false) String token,
+                                                  @PathVariable("reference") String reference) {
+        adminAccess.checkAccess(token);
+        long id = referenceGenerator.toId(reference);
+        if (id < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Invalid order reference [%s].", reference));
+        }
+        int nodeNumber = referenceGenerator.nodeNumberOf(id);
+        if (nodeNumber != referenceGenerator.getNodeNumber()) {
+            // The order was received (and indexed) by another member.
+            ClusterMember member = clusterRouter.getMemberByNodeNumber(nodeNumber);
+            if (member != null) {
+                return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                        .location(URI.create(member.url() + "/api/orders/" + reference))
+                        .build();
+            }
+        }
+        ReceivedOrder order = orderIndex.get(id);
+        if (order == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("No order found for reference [%s].", reference));
+        }
+        return ResponseEntity.ok(order);
     }
 
 }
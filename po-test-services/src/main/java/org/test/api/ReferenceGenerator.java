@@ -0,0 +1,131 @@
+package org.test.api;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.test.cluster.ClusterConfig;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Component used to generate the unique references returned for received orders.
+ * <p/>
+ * References are 63-bit identifiers made of the milliseconds elapsed since 2024-01-01, the number of the generating
+ * node and a per-millisecond sequence (41, 10 and 12 bits respectively), formatted as "REF-" followed by 19 digits so
+ * that they also sort as text. The node number is configured explicitly for each member (see
+ * ClusterConfig.getNodeNumber, 0 when the cluster mode is disabled), so references are unique across the cluster and
+ * reveal the member that received the order.
+ * <p/>
+ * Generation is lock-free: the last generated identifier is held in a single atomic long that is advanced with a
+ * compare-and-set. References are strictly increasing even if the clock moves backwards or more than 4096 references
+ * are requested within a millisecond, in which case the following milliseconds are borrowed until the clock catches
+ * up.
+ */
+@Component
+public class ReferenceGenerator {
+
+    /** The start of the references' timestamps (2024-01-01T00:00:00Z). */
+    private static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    /** The maximum number of nodes generating references. */
+    public static final int MAX_NODES = 1 << NODE_BITS;
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile("^REF-(\\d{1,19})$");
+
+    @Autowired
+    private ClusterConfig clusterConfig = null;
+
+    private final AtomicLong last = new AtomicLong();
+    private long nodeBits;
+
+    /**
+     * Determine the node number from the cluster configuration.
+     */
+    @PostConstruct
+    public void init() {
+        int nodeNumber = 0;
+        if (clusterConfig.isEnabled()) {
+            nodeNumber = clusterConfig.getNodeNumber();
+            if (nodeNumber < 0 || nodeNumber >= MAX_NODES) {
+                throw new IllegalStateException(String.format("The cluster node number must be set between 0 and %s when the cluster mode is enabled (was [%s]).", MAX_NODES - 1, nodeNumber));
+            }
+        }
+        nodeBits = (long) nodeNumber << SEQUENCE_BITS;
+    }
+
+    /**
+     * Generate a new identifier.
+     *
+     * @return The identifier.
+     */
+    public long nextId() {
+        long timestamp = System.currentTimeMillis() - EPOCH;
+        while (true) {
+            long previous = last.get();
+            long previousTimestamp = previous >>> (NODE_BITS + SEQUENCE_BITS);
+            long next;
+            if (timestamp > previousTimestamp) {
+                next = (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits;
+            } else if ((previous & MAX_SEQUENCE) < MAX_SEQUENCE) {
+                next = previous + 1;
+            } else {
+                next = ((previousTimestamp + 1) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits;
+            }
+            if (last.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Format an identifier as a reference.
+     *
+     * @param id The identifier.
+     * @return The reference.
+     */
+    public String toReference(long id) {
+        return "REF-%019d".formatted(id);
+    }
+
+    /**
+     * Parse a reference to its identifier.
+     *
+     * @param reference The reference.
+     * @return The identifier (-1 if the reference is invalid).
+     */
+    public long toId(String reference) {
+        Matcher matcher = REFERENCE_PATTERN.matcher(reference);
+        if (matcher.matches()) {
+            try {
+                return Long.parseLong(matcher.group(1));
+            } catch (NumberFormatException e) {
+                // Out of range.
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of the node that generated an identifier.
+     *
+     * @param id The identifier.
+     * @return The node number.
+     */
+    public int nodeNumberOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & (MAX_NODES - 1));
+    }
+
+    /**
+     * Get the number of this node.
+     *
+     * @return The node number.
+     */
+    public int getNodeNumber() {
+        return (int) (nodeBits >>> SEQUENCE_BITS);
+    }
+
+}
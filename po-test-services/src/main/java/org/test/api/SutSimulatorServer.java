@@ -0,0 +1,154 @@
+package org.test.api;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.test.simulator.SimulatedResetException;
+import org.test.simulator.SimulatorConfig;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of a simulated SUT receiving purchase orders, used to benchmark the sending of orders without an
+ * external SUT.
+ * <p/>
+ * The simulator is only active with the "sut-simulator" profile. Each order is answered with a new reference after a
+ * latency drawn from the configured distribution. Configured fractions of requests are instead answered with an
+ * error status, have their body streamed slowly, or have their connection dropped part-way through the response.
+ * <p/>
+ * Responses are completed asynchronously from a small scheduler, so that simulated latencies do not hold request
+ * threads and high request rates can be sustained.
+ */
+@RestController
+@Profile(SimulatorConfig.PROFILE)
+public class SutSimulatorServer {
+
+    /** Time allowed on top of a response's planned duration before the request times out. */
+    private static final long TIMEOUT_MARGIN = 5000;
+
+    @Autowired
+    private SimulatorConfig config = null;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, new SimulatorThreadFactory());
+    private final AtomicLong referenceCounter = new AtomicLong();
+    private String padding;
+
+    /**
+     * Prepare the padding chunk streamed for slow bodies (a new line followed by spaces).
+     */
+    @PostConstruct
+    public void init() {
+        padding = "\n" + " ".repeat(Math.max(0, config.getSlowBodyChunkSize() - 1));
+    }
+
+    @PostMapping(path = "/simulator/receiveOrder")
+    public ResponseEntity<ResponseBodyEmitter> receiveOrder() {
+        var random = ThreadLocalRandom.current();
+        long latency = config.getLatencyDistribution().sample(random, config.getLatencyMean(), config.getLatencyMin(), config.getLatencyMax(), config.getLatencySigma());
+        boolean reset = random.nextDouble() < config.getResetRate();
+        boolean error = !reset && random.nextDouble() < config.getErrorRate();
+        int chunks = (!reset && !error && random.nextDouble() < config.getSlowBodyRate()) ? config.getSlowBodyChunks() : 0;
+        var emitter = new ResponseBodyEmitter(latency + chunks * config.getSlowBodyChunkDelay() + TIMEOUT_MARGIN);
+        Runnable response;
+        if (reset) {
+            // Start the body and then abort it, closing the connection without completing the response (see SimulatedResetFilter).
+            response = () -> {
+                send(emitter, "REF-");
+                emitter.completeWithError(new SimulatedResetException());
+            };
+        } else if (error) {
+            response = () -> {
+                send(emitter, "Simulated error");
+                emitter.complete();
+            };
+        } else {
+            String reference = "REF-%010d".formatted(referenceCounter.incrementAndGet());
+            response = () -> {
+                if (send(emitter, reference)) {
+                    sendPadding(emitter, chunks);
+                }
+            };
+        }
+        if (latency > 0) {
+            scheduler.schedule(response, latency, TimeUnit.MILLISECONDS);
+        } else {
+            response.run();
+        }
+        return ResponseEntity.status(error ? config.getErrorStatus() : 200)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(emitter);
+    }
+
+    /**
+     * Stream the remaining padding chunks of a slow body, one chunk per chunk delay, and then complete the response.
+     *
+     * @param emitter The response's emitter.
+     * @param remaining The number of chunks left to send.
+     */
+    private void sendPadding(ResponseBodyEmitter emitter, int remaining) {
+        if (remaining == 0) {
+            emitter.complete();
+        } else {
+            scheduler.schedule(() -> {
+                if (send(emitter, padding)) {
+                    sendPadding(emitter, remaining - 1);
+                }
+            }, config.getSlowBodyChunkDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Send part of a response's body.
+     *
+     * @param emitter The response's emitter.
+     * @param text The text to send.
+     * @return Whether the text could be sent (false if the client went away).
+     */
+    private boolean send(ResponseBodyEmitter emitter, String text) {
+        try {
+            emitter.send(text, MediaType.TEXT_PLAIN);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Stop the simulator's scheduler.
+     */
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Factory for the daemon threads used to complete simulated responses.
+     */
+    private static class SimulatorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, "sut-simulator-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
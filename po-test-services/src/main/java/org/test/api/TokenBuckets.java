@@ -0,0 +1,142 @@
+package org.test.api;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of token buckets, one per key, sharing the same rate and burst capacity.
+ * <p/>
+ * Each bucket is implemented as the generic cell rate algorithm: its whole state is the theoretical arrival time of
+ * the next request, held in a single atomic long that is updated with a compare-and-set. Checks are therefore
+ * lock-free and allocation-free for known keys. Buckets that have fully refilled hold no information and are
+ * discarded before tracking a new key would exceed the limit of keys. When no bucket is idle, new keys are refused
+ * until the earliest bucket refills, which also bounds the eviction scans to one per refill.
+ */
+public class TokenBuckets {
+
+    /** The wait reported for new keys while another thread scans for idle buckets (a tenth of a second). */
+    private static final long SCAN_RETRY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final int maxKeys;
+    /** The earliest time at which an eviction scan can find an idle bucket (Long.MAX_VALUE while a scan runs). */
+    private final AtomicLong nextEviction = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Constructor.
+     *
+     * @param ratePerSecond The number of tokens added to each bucket per second.
+     * @param burst The capacity of each bucket.
+     * @param maxKeys The maximum number of tracked keys.
+     */
+    public TokenBuckets(double ratePerSecond, int burst, int maxKeys) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate limits require a positive rate and a burst of at least 1.");
+        }
+        this.emissionInterval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.burstTolerance = emissionInterval * (burst - 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Try to take a token from the bucket of the given key.
+     *
+     * @param key The key.
+     * @param now The current time (as per System.nanoTime).
+     * @return Zero if a token was taken, otherwise the number of nanoseconds until a token will be available.
+     */
+    public long tryAcquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys && evictIdle(now) >= maxKeys) {
+                return Math.max(1, untilEviction(now));
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long arrival = bucket.get();
+            long theoreticalArrival = Math.max(arrival, now);
+            long wait = theoreticalArrival - burstTolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, theoreticalArrival + emissionInterval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Get the time until a token can be taken from the bucket of the given key, without taking it.
+     *
+     * @param key The key.
+     * @param now The current time (as per System.nanoTime).
+     * @return Zero if a token is available, otherwise the number of nanoseconds until a token will be available.
+     */
+    public long peek(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            // A new key is refused when no bucket can be discarded to track it.
+            return buckets.size() >= maxKeys ? untilEviction(now) : 0;
+        }
+        return Math.max(0, Math.max(bucket.get(), now) - burstTolerance - now);
+    }
+
+    /**
+     * Return a token previously taken from the bucket of the given key.
+     *
+     * @param key The key.
+     */
+    public void release(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.addAndGet(-emissionInterval);
+        }
+    }
+
+    /**
+     * Get the time until an eviction scan can discard a bucket to track a new key.
+     *
+     * @param now The current time (as per System.nanoTime).
+     * @return The number of nanoseconds to wait (zero if a scan is due, a short wait if a scan is running).
+     */
+    private long untilEviction(long now) {
+        long scheduled = nextEviction.get();
+        if (scheduled == Long.MAX_VALUE) {
+            // The scan in progress may discard a bucket, but the next eviction time is not known until it completes.
+            return SCAN_RETRY;
+        }
+        return Math.max(0, scheduled - now);
+    }
+
+    /**
+     * Discard the buckets that have fully refilled.
+     * <p/>
+     * Scans are skipped until the earliest time a remaining bucket refills, as they could not discard anything.
+     *
+     * @param now The current time (as per System.nanoTime).
+     * @return The number of tracked keys after the eviction.
+     */
+    private int evictIdle(long now) {
+        long scheduled = nextEviction.get();
+        if (now < scheduled || !nextEviction.compareAndSet(scheduled, Long.MAX_VALUE)) {
+            // Not yet due, or another thread is scanning.
+            return buckets.size();
+        }
+        long earliest = Long.MAX_VALUE;
+        for (var iterator = buckets.values().iterator(); iterator.hasNext(); ) {
+            long arrival = iterator.next().get();
+            if (arrival <= now) {
+                iterator.remove();
+            } else {
+                earliest = Math.min(earliest, arrival);
+            }
+        }
+        nextEviction.set(earliest == Long.MAX_VALUE ? now : earliest);
+        return buckets.size();
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.test.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Component used to make internal calls to other cluster members.
+ * <p/>
+ * Calls are plain HTTP requests with JSON bodies, authenticated (if configured) with a shared secret header.
+ */
+@Component
+public class ClusterClient {
+
+    /** Header carrying the cluster's shared secret. */
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+    /** Base path of the internal cluster API. */
+    public static final String BASE_PATH = "/internal/cluster";
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Autowired
+    private ClusterConfig config = null;
+    @Autowired
+    private ObjectMapper objectMapper = null;
+
+    /**
+     * Make a call to a cluster member and wait for it to complete.
+     *
+     * @param member The member to call.
+     * @param method The HTTP method.
+     * @param path The path relative to the internal cluster API.
+     * @param body The body to send as JSON (null for no body).
+     * @param responseType The type of the expected response (null to ignore the response).
+     * @return The response (null if no response type was specified).
+     * @param <T> The response type.
+     */
+    public <T> T call(ClusterMember member, String method, String path, Object body, Class<T> responseType) {
+        try {
+            return callAsync(member, method, path, body, responseType).join();
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format("Error while calling cluster member [%s]", member.id()), e);
+        }
+    }
+
+    /**
+     * Make a call to a cluster member.
+     *
+     * @param member The member to call.
+     * @param method The HTTP method.
+     * @param path The path relative to the internal cluster API.
+     * @param body The body to send as JSON (null for no body).
+     * @param responseType The type of the expected response (null to ignore the response).
+     * @return The future response.
+     * @param <T> The response type.
+     */
+    public <T> CompletableFuture<T> callAsync(ClusterMember member, String method, String path, Object body, Class<T> responseType) {
+        HttpRequest.BodyPublisher bodyPublisher;
+        try {
+            bodyPublisher = (body == null) ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create(member.url() + BASE_PATH + path))
+                .timeout(Duration.ofMillis(config.getTimeout()))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .method(method, bodyPublisher);
+        if (!config.getSecret().isBlank()) {
+            request.header(SECRET_HEADER, config.getSecret());
+        }
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new IllegalStateException(String.format("Cluster member [%s] returned status [%s] for [%s %s]", member.id(), response.statusCode(), method, path));
+            }
+            if (responseType == null) {
+                return null;
+            }
+            try {
+                return objectMapper.readValue(response.body(), responseType);
+            } catch (IOException e) {
+                throw new IllegalStateException(String.format("Invalid response from cluster member [%s]", member.id()), e);
+            }
+        });
+    }
+
+}
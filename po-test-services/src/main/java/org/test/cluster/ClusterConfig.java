@@ -0,0 +1,122 @@
+package org.test.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class used to hold the cluster configuration.
+ */
+@Component
+public class ClusterConfig {
+
+    @Value("${cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cluster.nodeId:}")
+    private String nodeId;
+
+    @Value("${cluster.nodeNumber:-1}")
+    private int nodeNumber;
+
+    @Value("${cluster.members:}")
+    private String members;
+
+    @Value("${cluster.virtualNodes:128}")
+    private int virtualNodes;
+
+    @Value("${cluster.secret:}")
+    private String secret;
+
+    @Value("${cluster.timeout:5000}")
+    private long timeout;
+
+    /**
+     * Check to see if the cluster mode is enabled.
+     *
+     * @return The check result.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the identifier of this node.
+     *
+     * @return The identifier.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Get the number of this node, unique across the cluster and included in the references it generates.
+     *
+     * @return The node number (required when the cluster mode is enabled, -1 if not set).
+     */
+    public int getNodeNumber() {
+        return nodeNumber;
+    }
+
+    /**
+     * Get the statically configured cluster members.
+     * <p/>
+     * Members are configured as a comma-separated list of "id=url" entries.
+     *
+     * @return The members.
+     */
+    public List<ClusterMember> getMembers() {
+        return parseMembers(members);
+    }
+
+    /**
+     * Get the number of points per member on the hash ring.
+     *
+     * @return The number of virtual nodes.
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * Get the shared secret expected on internal cluster calls.
+     *
+     * @return The secret (required when the cluster mode is enabled).
+     */
+    public String getSecret() {
+        return secret;
+    }
+
+    /**
+     * Get the timeout for internal cluster calls.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Parse a member listing.
+     *
+     * @param value The comma-separated list of "id=url" entries.
+     * @return The members.
+     */
+    public static List<ClusterMember> parseMembers(String value) {
+        List<ClusterMember> parsed = new ArrayList<>();
+        for (String entry: value.split(",")) {
+            if (!entry.isBlank()) {
+                int separator = entry.indexOf('=');
+                if (separator < 1) {
+                    throw new IllegalArgumentException(String.format("Invalid cluster member [%s]. Members must be configured as id=url.", entry.trim()));
+                }
+                String url = entry.substring(separator + 1).trim();
+                parsed.add(new ClusterMember(entry.substring(0, separator).trim(), url.endsWith("/") ? url.substring(0, url.length() - 1) : url));
+            }
+        }
+        return parsed;
+    }
+
+}
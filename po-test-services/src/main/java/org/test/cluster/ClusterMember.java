@@ -0,0 +1,10 @@
+package org.test.cluster;
+
+/**
+ * A node of the po-test-services cluster.
+ *
+ * @param id The node's unique identifier.
+ * @param url The node's base URL (including the context path) used for internal calls.
+ */
+public record ClusterMember(String id, String url) {
+}
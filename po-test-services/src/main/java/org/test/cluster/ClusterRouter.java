@@ -0,0 +1,401 @@
+package org.test.cluster;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.test.gitb.StateManager;
+import org.test.state.PendingReceiveStep;
+import org.test.state.SutMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Component used to route session state changes to the cluster member responsible for them.
+ * <p/>
+ * When the cluster mode is disabled, all calls are passed directly to the local StateManager. When enabled, each
+ * VAT number is owned by a single member (determined through consistent hashing), and SUT messages and 'receive'
+ * steps are handled by the owner of their VAT number so that they always meet. Sessions are created and destroyed
+ * on all members, as a session's steps may concern VAT numbers owned by any of them. Creating a session fails if a
+ * member does not acknowledge it (after a retry), as that member would otherwise drop the steps forwarded to it.
+ * <p/>
+ * Messages and steps are never handled by a member not owning their VAT number, as this would split the VAT number's
+ * state across members. If the owner cannot be reached, the call fails instead. When members join, they first receive
+ * the existing sessions, and state is then moved to them with steps before messages, so that moved messages meet
+ * their sessions and steps.
+ * <p/>
+ * Each member also has a node number (see ClusterConfig.getNodeNumber), which members learn from each other when
+ * needed and which is checked for uniqueness when members join.
+ */
+@Component
+public class ClusterRouter {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterRouter.class);
+
+    @Autowired
+    private ClusterConfig config = null;
+    @Autowired
+    private ClusterClient clusterClient = null;
+    @Autowired
+    private StateManager stateManager = null;
+
+    /** The current hash ring (null if the cluster mode is disabled). */
+    private volatile HashRing ring;
+    /** The node numbers of other members (by member ID), as reported by the members themselves. */
+    private final Map<String, Integer> nodeNumbers = new ConcurrentHashMap<>();
+
+    /**
+     * Initialise the hash ring from the static cluster configuration.
+     */
+    @PostConstruct
+    public void init() {
+        if (config.isEnabled()) {
+            ring = new HashRing(config.getMembers(), config.getVirtualNodes());
+            if (ring.getMembers().stream().noneMatch(member -> member.id().equals(config.getNodeId()))) {
+                throw new IllegalStateException(String.format("The cluster node ID [%s] does not match any of the configured members.", config.getNodeId()));
+            }
+            if (config.getSecret().isBlank()) {
+                throw new IllegalStateException("A cluster secret must be configured when the cluster mode is enabled.");
+            }
+            LOG.info("Cluster mode enabled for node [{}] with [{}] members", config.getNodeId(), ring.getMembers().size());
+        }
+    }
+
+    /**
+     * Create a new session on all members.
+     * <p/>
+     * If a member does not acknowledge the session, the session is destroyed on all members.
+     *
+     * @param sessionId The session ID.
+     * @param callbackURL The callback URL to set for this session.
+     * @throws IllegalStateException If the session could not be created on all members.
+     */
+    public void createSession(String sessionId, String callbackURL) {
+        stateManager.createSession(sessionId, callbackURL);
+        try {
+            broadcastOrFail("POST", "/sessions", new SessionInfo(sessionId, callbackURL));
+        } catch (IllegalStateException e) {
+            destroySession(sessionId);
+            throw e;
+        }
+    }
+
+    /**
+     * Destroy a session on all members.
+     *
+     * @param sessionId The session ID.
+     */
+    public void destroySession(String sessionId) {
+        stateManager.destroySession(sessionId);
+        broadcast("DELETE", "/sessions/" + sessionId, null);
+    }
+
+    /**
+     * Handle a received SUT message on the member owning its VAT number.
+     *
+     * @param message The message.
+     * @throws IllegalStateException If the message could not be forwarded to its owner.
+     */
+    public void handleSutMessage(SutMessage message) {
+        ClusterMember owner = remoteOwnerOf(message.vatNumber());
+        if (owner == null) {
+            stateManager.handleSutMessage(message);
+        } else {
+            forward(owner, "/sutMessages", message, message.vatNumber());
+        }
+    }
+
+    /**
+     * Handle a 'receive' step on the member owning its VAT number.
+     *
+     * @param step The step.
+     * @throws IllegalStateException If the step could not be forwarded to its owner.
+     */
+    public void handleReceiveStep(PendingReceiveStep step) {
+        ClusterMember owner = remoteOwnerOf(step.vatNumber());
+        if (owner == null) {
+            stateManager.handleReceiveStep(step);
+        } else {
+            forward(owner, "/receiveSteps", step, step.vatNumber());
+        }
+    }
+
+    /**
+     * Get the current cluster members.
+     *
+     * @return The members (empty if the cluster mode is disabled).
+     */
+    public List<ClusterMember> getMembers() {
+        HashRing currentRing = ring;
+        return currentRing == null ? List.of() : currentRing.getMembers();
+    }
+
+    /**
+     * Replace the cluster's members and move state that this member no longer owns to its new owners.
+     *
+     * @param members The new members.
+     * @param propagate Whether to also apply the change to all other (previous and new) members.
+     */
+    public synchronized void updateMembers(List<ClusterMember> members, boolean propagate) {
+        if (ring == null) {
+            throw new IllegalStateException("The cluster mode is not enabled.");
+        }
+        checkNodeNumbers(members);
+        Map<String, ClusterMember> affectedMembers = new LinkedHashMap<>();
+        ring.getMembers().forEach(member -> affectedMembers.put(member.id(), member));
+        // Share the existing sessions with joining members before they own any VAT number.
+        List<ClusterMember> joiningMembers = members.stream()
+                .filter(member -> !affectedMembers.containsKey(member.id()) && !member.id().equals(config.getNodeId()))
+                .toList();
+        if (!joiningMembers.isEmpty()) {
+            List<SessionInfo> sessions = stateManager.snapshot().sessions().stream()
+                    .map(session -> new SessionInfo(session.sessionId(), session.callbackURL()))
+                    .toList();
+            CompletableFuture.allOf(joiningMembers.stream()
+                    .map(member -> callQuietly(member, "POST", "/sessions/batch", sessions))
+                    .toArray(CompletableFuture<?>[]::new)).join();
+        }
+        members.forEach(member -> affectedMembers.put(member.id(), member));
+        ring = new HashRing(members, config.getVirtualNodes());
+        Set<String> memberIds = members.stream().map(ClusterMember::id).collect(Collectors.toSet());
+        nodeNumbers.keySet().retainAll(memberIds);
+        LOG.info("Cluster membership updated to [{}] members", members.size());
+        if (propagate) {
+            List<CompletableFuture<?>> calls = new ArrayList<>();
+            for (ClusterMember member: affectedMembers.values()) {
+                if (!member.id().equals(config.getNodeId())) {
+                    calls.add(callQuietly(member, "PUT", "/members?propagate=false", members));
+                }
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+        }
+        rebalance();
+    }
+
+    /**
+     * Get the current member with the given node number.
+     *
+     * @param nodeNumber The node number.
+     * @return The member (null if no reachable member has this number or the cluster mode is disabled).
+     */
+    public ClusterMember getMemberByNodeNumber(int nodeNumber) {
+        for (ClusterMember member: getMembers()) {
+            Integer memberNodeNumber = nodeNumberOf(member);
+            if (memberNodeNumber != null && memberNodeNumber == nodeNumber) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that the members' node numbers are unique.
+     * <p/>
+     * Members that cannot be reached are not checked.
+     *
+     * @param members The members.
+     * @throws IllegalArgumentException If two members have the same node number.
+     */
+    private void checkNodeNumbers(List<ClusterMember> members) {
+        Map<Integer, String> memberIds = new HashMap<>();
+        for (ClusterMember member: members) {
+            Integer nodeNumber = nodeNumberOf(member);
+            if (nodeNumber != null) {
+                String otherMemberId = memberIds.putIfAbsent(nodeNumber, member.id());
+                if (otherMemberId != null && !otherMemberId.equals(member.id())) {
+                    throw new IllegalArgumentException(String.format("Cluster members [%s] and [%s] have the same node number [%s].", otherMemberId, member.id(), nodeNumber));
+                }
+            }
+        }
+    }
+
+    /**
+     * Determine the node number of a member, asking the member if it is not yet known.
+     *
+     * @param member The member.
+     * @return The node number (null if the member could not be reached).
+     */
+    private Integer nodeNumberOf(ClusterMember member) {
+        if (member.id().equals(config.getNodeId())) {
+            return config.getNodeNumber();
+        }
+        Integer nodeNumber = nodeNumbers.get(member.id());
+        if (nodeNumber == null) {
+            try {
+                NodeInfo info = clusterClient.call(member, "GET", "/node", null, NodeInfo.class);
+                if (info != null) {
+                    nodeNumber = info.nodeNumber();
+                    nodeNumbers.put(member.id(), nodeNumber);
+                }
+            } catch (IllegalStateException e) {
+                LOG.warn("Unable to determine the node number of cluster member [{}]", member.id(), e);
+            }
+        }
+        return nodeNumber;
+    }
+
+    /**
+     * Move parked SUT messages and pending 'receive' steps for VAT numbers no longer owned by this member.
+     * <p/>
+     * Steps are moved first, so that moved messages can complete them on their new owner. State that cannot be moved
+     * is kept locally (and logged), as dropping it would lose it altogether.
+     */
+    private void rebalance() {
+        List<PendingReceiveStep> steps = stateManager.removePendingSteps(vatNumber -> remoteOwnerOf(vatNumber) != null);
+        List<SutMessage> messages = stateManager.removeSutMessages(vatNumber -> remoteOwnerOf(vatNumber) != null);
+        if (!messages.isEmpty() || !steps.isEmpty()) {
+            LOG.info("Moving [{}] pending steps and [{}] parked messages to their new owners", steps.size(), messages.size());
+        }
+        for (PendingReceiveStep step: steps) {
+            try {
+                handleReceiveStep(step);
+            } catch (IllegalStateException e) {
+                LOG.error("Unable to move step for VAT number [{}] to its new owner - keeping it locally", step.vatNumber(), e);
+                stateManager.handleReceiveStep(step);
+            }
+        }
+        for (SutMessage message: messages) {
+            try {
+                handleSutMessage(message);
+            } catch (IllegalStateException e) {
+                LOG.error("Unable to move message for VAT number [{}] to its new owner - keeping it locally", message.vatNumber(), e);
+                stateManager.handleSutMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Forward a message or step to the member owning its VAT number, retrying once before failing.
+     *
+     * @param owner The owner.
+     * @param path The path relative to the internal cluster API.
+     * @param body The message or step.
+     * @param vatNumber The relevant VAT number.
+     * @throws IllegalStateException If the call failed twice.
+     */
+    private void forward(ClusterMember owner, String path, Object body, String vatNumber) {
+        try {
+            clusterClient.call(owner, "POST", path, body, null);
+        } catch (IllegalStateException e) {
+            LOG.warn("Unable to forward [{}] for VAT number [{}] to member [{}] - retrying", path, vatNumber, owner.id(), e);
+            clusterClient.call(owner, "POST", path, body, null);
+        }
+    }
+
+    /**
+     * Determine the member owning a VAT number, if this is not the current member.
+     *
+     * @param vatNumber The VAT number.
+     * @return The remote owner (null if the VAT number is owned locally or the cluster mode is disabled).
+     */
+    private ClusterMember remoteOwnerOf(String vatNumber) {
+        HashRing currentRing = ring;
+        if (currentRing == null) {
+            return null;
+        }
+        ClusterMember owner = currentRing.ownerOf(vatNumber);
+        return owner.id().equals(config.getNodeId()) ? null : owner;
+    }
+
+    /**
+     * Make the same call to all other members, waiting for all calls to complete.
+     *
+     * @param method The HTTP method.
+     * @param path The path relative to the internal cluster API.
+     * @param body The body to send (null for no body).
+     */
+    private void broadcast(String method, String path, Object body) {
+        HashRing currentRing = ring;
+        if (currentRing != null) {
+            List<CompletableFuture<?>> calls = new ArrayList<>();
+            for (ClusterMember member: currentRing.getMembers()) {
+                if (!member.id().equals(config.getNodeId())) {
+                    calls.add(callQuietly(member, method, path, body));
+                }
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+        }
+    }
+
+    /**
+     * Make the same call to all other members, retrying once for members that fail.
+     *
+     * @param method The HTTP method.
+     * @param path The path relative to the internal cluster API.
+     * @param body The body to send (null for no body).
+     * @throws IllegalStateException If the call failed twice for any member.
+     */
+    private void broadcastOrFail(String method, String path, Object body) {
+        HashRing currentRing = ring;
+        if (currentRing != null) {
+            List<CompletableFuture<String>> calls = new ArrayList<>();
+            for (ClusterMember member: currentRing.getMembers()) {
+                if (!member.id().equals(config.getNodeId())) {
+                    calls.add(clusterClient.callAsync(member, method, path, body, null)
+                            .exceptionallyCompose(error -> {
+                                LOG.warn("Error while calling [{} {}] on cluster member [{}] - retrying", method, path, member.id(), error);
+                                return clusterClient.callAsync(member, method, path, body, null);
+                            })
+                            .handle((result, error) -> {
+                                if (error != null) {
+                                    LOG.warn("Error while calling [{} {}] on cluster member [{}]", method, path, member.id(), error);
+                                    return member.id();
+                                }
+                                return null;
+                            }));
+                }
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+            List<String> failedMembers = calls.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+            if (!failedMembers.isEmpty()) {
+                throw new IllegalStateException(String.format("Cluster members %s did not acknowledge [%s %s].", failedMembers, method, path));
+            }
+        }
+    }
+
+    /**
+     * Call a member, logging rather than propagating failures.
+     *
+     * @param member The member to call.
+     * @param method The HTTP method.
+     * @param path The path relative to the internal cluster API.
+     * @param body The body to send (null for no body).
+     * @return The future call's completion.
+     */
+    private CompletableFuture<?> callQuietly(ClusterMember member, String method, String path, Object body) {
+        return clusterClient.callAsync(member, method, path, body, null).exceptionally(error -> {
+            LOG.warn("Error while calling [{} {}] on cluster member [{}]", method, path, member.id(), error);
+            return null;
+        });
+    }
+
+    /**
+     * Information on a session shared with other members.
+     *
+     * @param sessionId The session ID.
+     * @param callbackURL The session's callback URL.
+     */
+    public record SessionInfo(String sessionId, String callbackURL) {
+    }
+
+    /**
+     * Information on a member reported to other members.
+     *
+     * @param id The member's ID.
+     * @param nodeNumber The member's node number.
+     */
+    public record NodeInfo(String id, int nodeNumber) {
+    }
+
+}
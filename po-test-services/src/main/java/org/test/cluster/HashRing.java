@@ -0,0 +1,79 @@
+package org.test.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring assigning VAT numbers to cluster members.
+ * <p/>
+ * Each member is placed on the ring at several points (virtual nodes) so that VAT numbers are spread evenly and
+ * membership changes only move the VAT numbers of the affected ring segments. VAT numbers are matched in a
+ * case-insensitive way, so they are hashed in lower case.
+ */
+public class HashRing {
+
+    private final TreeMap<Long, ClusterMember> ring = new TreeMap<>();
+    private final List<ClusterMember> members;
+
+    /**
+     * Constructor.
+     *
+     * @param members The cluster's members.
+     * @param virtualNodes The number of points per member on the ring.
+     */
+    public HashRing(List<ClusterMember> members, int virtualNodes) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A cluster must have at least one member.");
+        }
+        this.members = List.copyOf(members);
+        for (ClusterMember member: members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(member.id() + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * Get the member owning the given VAT number.
+     *
+     * @param vatNumber The VAT number.
+     * @return The owning member.
+     */
+    public ClusterMember ownerOf(String vatNumber) {
+        Map.Entry<Long, ClusterMember> entry = ring.ceilingEntry(hash(vatNumber.toLowerCase(Locale.ROOT)));
+        return (entry == null ? ring.firstEntry() : entry).getValue();
+    }
+
+    /**
+     * Get the ring's members.
+     *
+     * @return The members.
+     */
+    public List<ClusterMember> getMembers() {
+        return members;
+    }
+
+    /**
+     * Hash a value using 64-bit FNV-1a, followed by a final mix to spread similar values across the ring.
+     *
+     * @param value The value to hash.
+     * @return The hash.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b: value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+
+}
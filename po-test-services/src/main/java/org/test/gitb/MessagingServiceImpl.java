@@ -5,23 +5,24 @@ import com.gitb.core.ValueEmbeddingEnumeration;
 import com.gitb.ms.Void;
 import com.gitb.ms.*;
 import com.gitb.tr.TAR;
+import com.gitb.tr.TestAssertionGroupReportsType;
 import com.gitb.tr.TestResultType;
 import jakarta.annotation.Resource;
 import jakarta.xml.ws.WebServiceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.test.cluster.ClusterRouter;
 import org.test.state.PendingReceiveStep;
+import org.test.sut.*;
 
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Spring component that realises the messaging service.
@@ -31,11 +32,21 @@ public class MessagingServiceImpl implements MessagingService {
 
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(MessagingServiceImpl.class);
+    /** Send mode that delivers each order to each endpoint once. */
+    private static final String SEND_MODE_DEFAULT = "default";
+    /** Send mode that generates rate-controlled load against the endpoints. */
+    private static final String SEND_MODE_LOAD = "load";
 
     @Autowired
-    private StateManager stateManager = null;
+    private ClusterRouter clusterRouter = null;
     @Autowired
     private Utils utils = null;
+    @Autowired
+    private SutDispatcher sutDispatcher = null;
+    @Autowired
+    private LoadGenerator loadGenerator = null;
+    @Autowired
+    private OrderTemplates orderTemplates = null;
     @Resource
     private WebServiceContext wsContext = null;
 
@@ -73,7 +84,7 @@ public class MessagingServiceImpl implements MessagingService {
         String replyToAddress = utils.getReplyToAddressFromHeaders(wsContext).orElseThrow();
         // Get the test session ID to use for tracking session state.
         String sessionId = utils.getTestSessionIdFromHeaders(wsContext).orElseThrow();
-        stateManager.createSession(sessionId, replyToAddress);
+        clusterRouter.createSession(sessionId, replyToAddress);
         LOG.info("Initiated a new session [{}] with callback address [{}]", sessionId, replyToAddress);
         return response;
     }
@@ -102,7 +113,7 @@ public class MessagingServiceImpl implements MessagingService {
         // Extract input.
         String vatNumber = utils.getRequiredString(parameters.getInput(), "vatNumber");
         // Manage the received call (park it for later or immediately satisfy it).
-        stateManager.handleReceiveStep(new PendingReceiveStep(
+        clusterRouter.handleReceiveStep(new PendingReceiveStep(
                 parameters.getSessionId(),
                 parameters.getCallId(),
                 utils.getReplyToAddressFromHeaders(wsContext).orElseThrow(),
@@ -120,6 +131,20 @@ public class MessagingServiceImpl implements MessagingService {
      * The result of the operation is typically an empty success or failure report depending on whether or not the
      * communication was successful. This report could however include additional information that would be reported
      * back to the test bed.
+     * <p/>
+     * Both the "purchaseOrder" and "endpoint" inputs may be repeated or provided as lists. When more than one order
+     * or endpoint is provided, each order is sent to each endpoint, with the calls being dispatched concurrently
+     * (limited by the optional "parallelism" input). The results of such batches are reported as a "responses" list.
+     * Each response reports the time the call was allowed ("timeout") and the time it took ("latency") in milliseconds.
+     * Setting the "hedge" input to true (only for idempotent scenarios) allows slow calls to be duplicated, with the
+     * first response being used.
+     * <p/>
+     * Setting the "mode" input to "load" instead generates load against the endpoints at a target "rate" (requests per
+     * second) for a "duration" (seconds), with at most "concurrency" requests in flight. The orders are used in rotation
+     * as payload variants and the run's measurements are reported in a "load" map.
+     * <p/>
+     * Instead of complete orders, a FreeMarker "template" can be provided with its "parameters" (a map, or a list of
+     * maps for multiple orders). The orders are then generated by this service and streamed directly to the SUT.
      *
      * @param parameters The input parameters and configuration to consider for the send operation.
      * @return A status report for the call that will be returned to the test bed.
@@ -128,44 +153,232 @@ public class MessagingServiceImpl implements MessagingService {
     public SendResponse send(SendRequest parameters) {
         LOG.info("Received 'send' command from test bed for session [{}]", parameters.getSessionId());
         // Extract inputs.
-        String purchaseOrder = utils.getRequiredString(parameters.getInput(), "purchaseOrder");
-        String endpoint = utils.getRequiredString(parameters.getInput(), "endpoint");
-        // Create request.
-        HttpRequest sutRequest = HttpRequest.newBuilder()
-                .uri(URI.create(endpoint))
-                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_XML_VALUE)
-                .POST(HttpRequest.BodyPublishers.ofString(purchaseOrder))
-                .build();
-        // Call SUT.
-        HttpResponse<String> sutResponse;
-        try {
-            sutResponse = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(10))
-                    .followRedirects(HttpClient.Redirect.ALWAYS)
-                    .build()
-                    .send(sutRequest, HttpResponse.BodyHandlers.ofString());
-        } catch (Exception e) {
-            throw new IllegalStateException("Error while contacting SUT", e);
+        List<OrderPayload> payloads = getOrderPayloads(parameters.getInput());
+        List<String> endpoints = utils.getRequiredStrings(parameters.getInput(), "endpoint");
+        String mode = utils.getOptionalString(parameters.getInput(), "mode").orElse(SEND_MODE_DEFAULT);
+        if (SEND_MODE_LOAD.equalsIgnoreCase(mode)) {
+            var profile = new LoadProfile(
+                    endpoints,
+                    payloads,
+                    Double.parseDouble(utils.getRequiredString(parameters.getInput(), "rate")),
+                    Duration.ofMillis((long) (Double.parseDouble(utils.getRequiredString(parameters.getInput(), "duration")) * 1000)),
+                    utils.getOptionalString(parameters.getInput(), "concurrency").map(Integer::parseInt).orElse(loadGenerator.getDefaultConcurrency())
+            );
+            SendResponse response = new SendResponse();
+            response.setReport(createLoadReport(loadGenerator.run(profile)));
+            return response;
+        } else if (!SEND_MODE_DEFAULT.equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException(String.format("Unsupported send mode [%s].", mode));
+        }
+        int parallelism = utils.getOptionalString(parameters.getInput(), "parallelism").map(Integer::parseInt).orElse(sutDispatcher.getDefaultParallelism());
+        boolean hedge = utils.getOptionalString(parameters.getInput(), "hedge").map(Boolean::parseBoolean).orElse(false);
+        // Create the calls to make (each order to each endpoint).
+        List<SutCall> calls = new ArrayList<>(payloads.size() * endpoints.size());
+        for (String endpoint: endpoints) {
+            for (OrderPayload payload: payloads) {
+                calls.add(new SutCall(calls.size(), parameters.getSessionId(), endpoint, payload));
+            }
+        }
+        TAR report;
+        if (calls.size() == 1) {
+            report = createSendReport(sutDispatcher.dispatch(calls.get(0), hedge));
+        } else {
+            LOG.info("Sending batch of [{}] calls with parallelism [{}] for session [{}]", calls.size(), parallelism, parameters.getSessionId());
+            report = createBatchSendReport(sutDispatcher.dispatch(calls, parallelism, hedge));
+        }
+        // Return report.
+        SendResponse response = new SendResponse();
+        response.setReport(report);
+        return response;
+    }
+
+    /**
+     * Determine the purchase orders to send from the provided inputs.
+     * <p/>
+     * Orders are either provided directly via the "purchaseOrder" input, or generated from the "template" input
+     * rendered once per provided "parameters" map.
+     *
+     * @param inputs The send operation's inputs.
+     * @return The payloads to send.
+     */
+    private List<OrderPayload> getOrderPayloads(List<AnyContent> inputs) {
+        Optional<String> template = utils.getOptionalString(inputs, "template");
+        if (template.isPresent()) {
+            List<Map<String, Object>> parameterSets = utils.getMaps(inputs, "parameters");
+            if (parameterSets.isEmpty()) {
+                parameterSets = List.of(Map.of());
+            }
+            return parameterSets.stream().map(templateParameters -> orderTemplates.payloadFor(template.get(), templateParameters)).toList();
+        } else {
+            return utils.getRequiredStrings(inputs, "purchaseOrder").stream().map(OrderPayload::of).toList();
+        }
+    }
+
+    /**
+     * Create the report for a single call made to a SUT.
+     *
+     * @param result The call's result.
+     * @return The report.
+     */
+    private TAR createSendReport(SutResult result) {
+        if (!result.isDelivered()) {
+            throw new IllegalStateException("Error while contacting SUT", result.error());
         }
         // Prepare report for Test Bed.
         TAR report = utils.createReport(TestResultType.SUCCESS);
         // The purchase order we sent.
-        AnyContent requestData = utils.createAnyContentSimple("purchaseOrder", purchaseOrder, ValueEmbeddingEnumeration.STRING);
-        // Don't record this in the session context as we don't need it.
-        requestData.setForContext(false);
-        // Pass a hint to the Test Bed that this is XML for better syntax highlighting.
-        requestData.setMimeType(MediaType.APPLICATION_XML_VALUE);
-        report.getContext().getItem().add(requestData);
+        report.getContext().getItem().add(createPurchaseOrderContent(result.call().payload()));
         // The response data we received.
         AnyContent responseData = new AnyContent();
         responseData.setName("response");
-        responseData.getItem().add(utils.createAnyContentSimple("status", String.valueOf(sutResponse.statusCode()), ValueEmbeddingEnumeration.STRING));
-        responseData.getItem().add(utils.createAnyContentSimple("payload", String.valueOf(sutResponse.body()), ValueEmbeddingEnumeration.STRING));
+        responseData.getItem().add(utils.createAnyContentSimple("status", String.valueOf(result.status()), ValueEmbeddingEnumeration.STRING));
+        addResponseBodyContent(result.body(), responseData);
+        addTimingContent(result, responseData);
         report.getContext().getItem().add(responseData);
-        // Return report.
-        SendResponse response = new SendResponse();
-        response.setReport(report);
-        return response;
+        return report;
+    }
+
+    /**
+     * Create the aggregated report for a batch of calls made to SUTs.
+     * <p/>
+     * The report fails if any of the calls could not be completed, but includes the results of all calls.
+     *
+     * @param results The calls' results.
+     * @return The report.
+     */
+    private TAR createBatchSendReport(List<SutResult> results) {
+        long failures = results.stream().filter(result -> !result.isDelivered()).count();
+        TAR report = utils.createReport(failures == 0 ? TestResultType.SUCCESS : TestResultType.FAILURE);
+        report.setReports(new TestAssertionGroupReportsType());
+        AnyContent responses = new AnyContent();
+        responses.setName("responses");
+        responses.setType("list");
+        for (SutResult result: results) {
+            AnyContent responseData = new AnyContent();
+            responseData.setType("map");
+            responseData.getItem().add(utils.createAnyContentSimple("endpoint", result.call().endpoint(), ValueEmbeddingEnumeration.STRING));
+            responseData.getItem().add(createPurchaseOrderContent(result.call().payload()));
+            responseData.getItem().add(utils.createAnyContentSimple("status", String.valueOf(result.status()), ValueEmbeddingEnumeration.STRING));
+            if (result.isDelivered()) {
+                addResponseBodyContent(result.body(), responseData);
+            } else {
+                String message = "Error while contacting SUT at [%s]: %s".formatted(result.call().endpoint(), result.error().getMessage());
+                responseData.getItem().add(utils.createAnyContentSimple("error", message, ValueEmbeddingEnumeration.STRING));
+                utils.addReportItemError(message, report.getReports().getInfoOrWarningOrError());
+            }
+            addTimingContent(result, responseData);
+            responses.getItem().add(responseData);
+        }
+        report.getContext().getItem().add(responses);
+        report.getContext().getItem().add(utils.createAnyContentSimple("succeeded", String.valueOf(results.size() - failures), ValueEmbeddingEnumeration.STRING));
+        report.getContext().getItem().add(utils.createAnyContentSimple("failed", String.valueOf(failures), ValueEmbeddingEnumeration.STRING));
+        return report;
+    }
+
+    /**
+     * Add the captured response body to a response's report content.
+     * <p/>
+     * Besides the payload, this reports the number of bytes read, whether the payload was truncated and, if
+     * configured, the digest of the full body.
+     *
+     * @param body The captured body.
+     * @param responseData The response's content.
+     */
+    private void addResponseBodyContent(CapturedBody body, AnyContent responseData) {
+        responseData.getItem().add(utils.createAnyContentSimple("payload", String.valueOf(body.text()), ValueEmbeddingEnumeration.STRING));
+        responseData.getItem().add(utils.createAnyContentSimple("size", String.valueOf(body.size()), ValueEmbeddingEnumeration.STRING));
+        responseData.getItem().add(utils.createAnyContentSimple("truncated", String.valueOf(body.truncated()), ValueEmbeddingEnumeration.STRING));
+        if (body.digest() != null) {
+            responseData.getItem().add(utils.createAnyContentSimple("digest", body.digest(), ValueEmbeddingEnumeration.STRING));
+        }
+    }
+
+    /**
+     * Add the timings of a call to a response's report content.
+     * <p/>
+     * This reports in milliseconds the time the call waited for its endpoint's capacity, the time it was allowed and
+     * the time it took, as well as the number of requests made for it (more than one if it was hedged).
+     *
+     * @param result The call's result.
+     * @param responseData The response's content.
+     */
+    private void addTimingContent(SutResult result, AnyContent responseData) {
+        responseData.getItem().add(utils.createAnyContentSimple("queueWait", String.valueOf(result.queueWait().toMillis()), ValueEmbeddingEnumeration.STRING));
+        responseData.getItem().add(utils.createAnyContentSimple("timeout", String.valueOf(result.timeout().toMillis()), ValueEmbeddingEnumeration.STRING));
+        responseData.getItem().add(utils.createAnyContentSimple("latency", String.valueOf(result.latency().toMillis()), ValueEmbeddingEnumeration.STRING));
+        responseData.getItem().add(utils.createAnyContentSimple("attempts", String.valueOf(result.attempts()), ValueEmbeddingEnumeration.STRING));
+    }
+
+    /**
+     * Create the report for a load run.
+     * <p/>
+     * Latencies are reported in milliseconds and status code counts are keyed by status (with "none" used for
+     * requests that received no response).
+     *
+     * @param result The run's measurements.
+     * @return The report.
+     */
+    private TAR createLoadReport(LoadResult result) {
+        TAR report = utils.createReport(TestResultType.SUCCESS);
+        AnyContent loadData = new AnyContent();
+        loadData.setName("load");
+        loadData.setType("map");
+        loadData.getItem().add(utils.createAnyContentSimple("requests", String.valueOf(result.requests()), ValueEmbeddingEnumeration.STRING));
+        loadData.getItem().add(utils.createAnyContentSimple("errors", String.valueOf(result.errors()), ValueEmbeddingEnumeration.STRING));
+        loadData.getItem().add(utils.createAnyContentSimple("elapsed", String.valueOf(result.elapsed().toMillis()), ValueEmbeddingEnumeration.STRING));
+        loadData.getItem().add(utils.createAnyContentSimple("throughput", "%.2f".formatted(result.throughput()), ValueEmbeddingEnumeration.STRING));
+        AnyContent statusData = new AnyContent();
+        statusData.setName("statusCodes");
+        statusData.setType("map");
+        result.statusCounts().forEach((status, count) -> statusData.getItem().add(utils.createAnyContentSimple(status < 0 ? "none" : String.valueOf(status), String.valueOf(count), ValueEmbeddingEnumeration.STRING)));
+        loadData.getItem().add(statusData);
+        AnyContent latencyData = new AnyContent();
+        latencyData.setName("latency");
+        latencyData.setType("map");
+        latencyData.getItem().add(utils.createAnyContentSimple("p50", toMillis(result.latencies().getValueAtPercentile(50)), ValueEmbeddingEnumeration.STRING));
+        latencyData.getItem().add(utils.createAnyContentSimple("p90", toMillis(result.latencies().getValueAtPercentile(90)), ValueEmbeddingEnumeration.STRING));
+        latencyData.getItem().add(utils.createAnyContentSimple("p99", toMillis(result.latencies().getValueAtPercentile(99)), ValueEmbeddingEnumeration.STRING));
+        latencyData.getItem().add(utils.createAnyContentSimple("max", toMillis(result.latencies().getMax()), ValueEmbeddingEnumeration.STRING));
+        latencyData.getItem().add(utils.createAnyContentSimple("mean", "%.3f".formatted(result.latencies().getMean() / 1000.0), ValueEmbeddingEnumeration.STRING));
+        loadData.getItem().add(latencyData);
+        report.getContext().getItem().add(loadData);
+        return report;
+    }
+
+    /**
+     * Format a duration recorded in microseconds as milliseconds.
+     *
+     * @param micros The duration in microseconds.
+     * @return The formatted milliseconds.
+     */
+    private String toMillis(long micros) {
+        return "%.3f".formatted(micros / 1000.0);
+    }
+
+    /**
+     * Create the report content for a purchase order that was sent.
+     * <p/>
+     * Generated orders are not rendered a second time for the report, so for these the template parameters are
+     * reported instead.
+     *
+     * @param payload The purchase order.
+     * @return The content.
+     */
+    private AnyContent createPurchaseOrderContent(OrderPayload payload) {
+        if (payload.text().isEmpty()) {
+            AnyContent parameterData = new AnyContent();
+            parameterData.setName("parameters");
+            parameterData.setType("map");
+            parameterData.setForContext(false);
+            payload.parameters().forEach((name, value) -> parameterData.getItem().add(utils.createAnyContentSimple(name, String.valueOf(value), ValueEmbeddingEnumeration.STRING)));
+            return parameterData;
+        }
+        AnyContent requestData = utils.createAnyContentSimple("purchaseOrder", payload.text().get(), ValueEmbeddingEnumeration.STRING);
+        // Don't record this in the session context as we don't need it.
+        requestData.setForContext(false);
+        // Pass a hint to the Test Bed that this is XML for better syntax highlighting.
+        requestData.setMimeType(MediaType.APPLICATION_XML_VALUE);
+        return requestData;
     }
 
     /**
@@ -208,7 +421,7 @@ public class MessagingServiceImpl implements MessagingService {
     public Void finalize(FinalizeRequest parameters) {
         LOG.info("Finalising session [{}]", parameters.getSessionId());
         // Cleanup in-memory state for the completed session.
-        stateManager.destroySession(parameters.getSessionId());
+        clusterRouter.destroySession(parameters.getSessionId());
         return new Void();
     }
 
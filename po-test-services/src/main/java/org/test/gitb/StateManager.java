@@ -7,11 +7,17 @@ import com.gitb.tr.TestResultType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.test.state.DeliveryMode;
 import org.test.state.PendingReceiveStep;
+import org.test.state.StateSnapshot;
 import org.test.state.SutMessage;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.IntStream;
 
 /**
@@ -23,6 +29,11 @@ import java.util.stream.IntStream;
  * <p/>
  * This implementation stores session information in memory. An alternative solution
  * that would be fault-tolerant could store test session data in a DB.
+ * <p/>
+ * A SUT message matching pending 'receive' steps in several sessions is delivered according to the configured
+ * delivery mode (see DeliveryMode). When broadcast, the report carrying the message is built once and shared by all
+ * the resulting notifications. Notifications are sent after releasing the lock, so that creating clients and
+ * marshalling reports for the Test Bed do not block other state changes.
  */
 @Component
 public class StateManager {
@@ -30,18 +41,23 @@ public class StateManager {
     /** Logger. */
     private static final Logger LOG = LoggerFactory.getLogger(StateManager.class);
 
-    /** The map of in-memory active sessions. */
-    private final Map<String, Map<String, Object>> sessions = new HashMap<>();
+    /** The map of in-memory active sessions (in creation order). */
+    private final Map<String, Map<String, Object>> sessions = new LinkedHashMap<>();
     /** Parked SUT messages for later matching against test sessions. */
     private final List<SutMessage> sutMessages = new ArrayList<>();
     /** Lock object to use for synchronisation. */
     private final Object lock = new Object();
+    /** The version of the state, incremented (while holding the lock) on each change. */
+    private final AtomicLong version = new AtomicLong();
 
     @Autowired
     private TestBedNotifier testBedNotifier = null;
     @Autowired
     private Utils utils = null;
 
+    @Value("${delivery.mode:broadcast}")
+    private DeliveryMode deliveryMode = DeliveryMode.BROADCAST;
+
     /**
      * Create a new session.
      *
@@ -60,10 +76,25 @@ public class StateManager {
             Map<String, Object> sessionInfo = new HashMap<>();
             sessionInfo.put(SessionData.CALLBACK_URL, callbackURL);
             sessions.put(sessionId, sessionInfo);
+            version.incrementAndGet();
         }
         return sessionId;
     }
 
+    /**
+     * Create a session if it is not already tracked.
+     *
+     * @param sessionId The session ID.
+     * @param callbackURL The callback URL to set for the session if it is created.
+     */
+    public void ensureSession(String sessionId, String callbackURL) {
+        synchronized (lock) {
+            if (!sessions.containsKey(sessionId)) {
+                createSession(sessionId, callbackURL);
+            }
+        }
+    }
+
     /**
      * Remove the provided session from the list of tracked sessions.
      *
@@ -76,6 +107,7 @@ public class StateManager {
             if (sessions.isEmpty()) {
                 sutMessages.clear();
             }
+            version.incrementAndGet();
         }
     }
 
@@ -85,33 +117,43 @@ public class StateManager {
      * @param messageInfo The message information.
      */
     public void handleSutMessage(SutMessage messageInfo) {
+        List<PendingReceiveStep> matchedSteps = new ArrayList<>();
         synchronized (lock) {
             if (sessions.isEmpty()) {
                 // Ignore messages coming when we have no ongoing test sessions.
                 LOG.info("Ignoring message received for VAT number {} as no sessions were active", messageInfo.vatNumber());
-            } else {
-                boolean sessionFound = false;
-                for (var sessionEntry: sessions.entrySet()) {
-                    List<PendingReceiveStep> pendingSteps = (List<PendingReceiveStep>) sessionEntry.getValue().get("pendingSteps");
-                    if (pendingSteps != null && !pendingSteps.isEmpty()) {
-                        // We have a test session with pending 'receive' steps - look for a match.
-                        OptionalInt foundStepIndex = IntStream.range(0, pendingSteps.size())
-                                .filter(i -> messageInfo.vatNumber().equalsIgnoreCase(pendingSteps.get(i).vatNumber()))
-                                .findFirst();
-                        if (foundStepIndex.isPresent()) {
-                            // Matching 'receive' step found = notify Test Bed.
-                            sessionFound = true;
-                            PendingReceiveStep matchedStep = pendingSteps.remove(foundStepIndex.getAsInt());
-                            completeReceiveStepWithPurchaseOrder(matchedStep, messageInfo.content());
-                            LOG.info("Found session [{}] expecting a message for VAT number [{}]", matchedStep.sessionId(), matchedStep.vatNumber());
+                return;
+            }
+            version.incrementAndGet();
+            for (var sessionEntry: sessions.entrySet()) {
+                List<PendingReceiveStep> pendingSteps = (List<PendingReceiveStep>) sessionEntry.getValue().get("pendingSteps");
+                if (pendingSteps != null && !pendingSteps.isEmpty()) {
+                    // We have a test session with pending 'receive' steps - look for a match.
+                    OptionalInt foundStepIndex = IntStream.range(0, pendingSteps.size())
+                            .filter(i -> messageInfo.vatNumber().equalsIgnoreCase(pendingSteps.get(i).vatNumber()))
+                            .findFirst();
+                    if (foundStepIndex.isPresent()) {
+                        PendingReceiveStep matchedStep = pendingSteps.remove(foundStepIndex.getAsInt());
+                        matchedSteps.add(matchedStep);
+                        LOG.info("Found session [{}] expecting a message for VAT number [{}]", matchedStep.sessionId(), matchedStep.vatNumber());
+                        if (deliveryMode == DeliveryMode.FIRST_MATCH) {
+                            break;
                         }
                     }
                 }
-                if (!sessionFound) {
-                    LOG.info("No test session was found to be expecting message for VAT number [{}]", messageInfo.vatNumber());
-                    sutMessages.add(messageInfo);
-                }
             }
+            if (matchedSteps.isEmpty()) {
+                LOG.info("No test session was found to be expecting message for VAT number [{}]", messageInfo.vatNumber());
+                sutMessages.add(messageInfo);
+                return;
+            }
+        }
+        // Matching 'receive' steps found = notify Test Bed (outside the lock, as this marshals the report and may
+        // create the callback's client). The report is built once and shared by all matched sessions, as it is not
+        // modified when sent.
+        TAR report = createPurchaseOrderReport(messageInfo.content());
+        for (var matchedStep: matchedSteps) {
+            testBedNotifier.notifyTestBed(matchedStep.sessionId(), matchedStep.callId(), matchedStep.callbackAddress(), report);
         }
     }
 
@@ -121,16 +163,16 @@ public class StateManager {
      * @param stepInfo The step's information.
      */
     public void handleReceiveStep(PendingReceiveStep stepInfo) {
+        SutMessage matchedMessage = null;
         synchronized (lock) {
+            version.incrementAndGet();
             // Check to see if we have an already received SUT message for the expected VAT number.
             OptionalInt foundMessageIndex = IntStream.range(0, sutMessages.size())
                     .filter(i -> stepInfo.vatNumber().equalsIgnoreCase(sutMessages.get(i).vatNumber()))
                     .findFirst();
             if (foundMessageIndex.isPresent()) {
-                // Found matching SUT message - notify Test Bed.
                 LOG.info("Found matching SUT message for test session [{}]", stepInfo.sessionId());
-                SutMessage matchedMessage = sutMessages.remove(foundMessageIndex.getAsInt());
-                completeReceiveStepWithPurchaseOrder(stepInfo, matchedMessage.content());
+                matchedMessage = sutMessages.remove(foundMessageIndex.getAsInt());
             } else {
                 // SUT message not found - park step for later.
                 LOG.info("Parking for later step expecting message for VAT number [{}] in session [{}]", stepInfo.vatNumber(), stepInfo.sessionId());
@@ -138,21 +180,95 @@ public class StateManager {
                     List<PendingReceiveStep> pendingSteps = (List<PendingReceiveStep>) sessions.get(stepInfo.sessionId()).computeIfAbsent("pendingSteps", key -> new ArrayList<PendingReceiveStep>());
                     pendingSteps.add(stepInfo);
                 }
-                testBedNotifier.sendLogMessage(stepInfo.sessionId(), stepInfo.callbackAddress(), "Ready to receive SUT message for VAT number [%s].".formatted(stepInfo.vatNumber()), LogLevel.INFO);
             }
         }
+        // Notify the Test Bed outside the lock.
+        if (matchedMessage != null) {
+            // Found matching SUT message - notify Test Bed.
+            testBedNotifier.notifyTestBed(stepInfo.sessionId(), stepInfo.callId(), stepInfo.callbackAddress(), createPurchaseOrderReport(matchedMessage.content()));
+        } else {
+            testBedNotifier.sendLogMessage(stepInfo.sessionId(), stepInfo.callbackAddress(), "Ready to receive SUT message for VAT number [%s].".formatted(stepInfo.vatNumber()), LogLevel.INFO);
+        }
+    }
+
+    /**
+     * Remove the parked SUT messages for the VAT numbers matching the provided filter.
+     *
+     * @param vatNumberFilter The filter to apply on the messages' VAT numbers.
+     * @return The removed messages.
+     */
+    public List<SutMessage> removeSutMessages(Predicate<String> vatNumberFilter) {
+        synchronized (lock) {
+            List<SutMessage> removed = new ArrayList<>();
+            sutMessages.removeIf(message -> vatNumberFilter.test(message.vatNumber()) && removed.add(message));
+            version.incrementAndGet();
+            return removed;
+        }
+    }
+
+    /**
+     * Remove the pending 'receive' steps for the VAT numbers matching the provided filter.
+     *
+     * @param vatNumberFilter The filter to apply on the steps' VAT numbers.
+     * @return The removed steps.
+     */
+    public List<PendingReceiveStep> removePendingSteps(Predicate<String> vatNumberFilter) {
+        synchronized (lock) {
+            List<PendingReceiveStep> removed = new ArrayList<>();
+            for (var sessionInfo: sessions.values()) {
+                List<PendingReceiveStep> pendingSteps = (List<PendingReceiveStep>) sessionInfo.get("pendingSteps");
+                if (pendingSteps != null) {
+                    pendingSteps.removeIf(step -> vatNumberFilter.test(step.vatNumber()) && removed.add(step));
+                }
+            }
+            version.incrementAndGet();
+            return removed;
+        }
+    }
+
+    /**
+     * Get the current version of the state.
+     * <p/>
+     * Reading the version does not require the lock, allowing callers to cheaply check whether the state changed.
+     *
+     * @return The version.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Take an immutable snapshot of the current state.
+     * <p/>
+     * This holds the lock while copying the state, so it should not be called on every read (see StateSnapshotProvider).
+     *
+     * @return The snapshot.
+     */
+    public StateSnapshot snapshot() {
+        synchronized (lock) {
+            List<StateSnapshot.Session> sessionSnapshots = new ArrayList<>(sessions.size());
+            for (var sessionEntry: sessions.entrySet()) {
+                List<PendingReceiveStep> pendingSteps = (List<PendingReceiveStep>) sessionEntry.getValue().get("pendingSteps");
+                sessionSnapshots.add(new StateSnapshot.Session(
+                        sessionEntry.getKey(),
+                        (String) sessionEntry.getValue().get(SessionData.CALLBACK_URL),
+                        pendingSteps == null ? List.of() : List.copyOf(pendingSteps)
+                ));
+            }
+            return new StateSnapshot(version.get(), Instant.now(), List.copyOf(sessionSnapshots), List.copyOf(sutMessages));
+        }
     }
 
     /**
-     * Complete a 'receive' step by notifying the Test Bed.
+     * Create the report used to complete 'receive' steps with a purchase order.
      *
-     * @param stepInfo The 'receive' step's information.
      * @param purchaseOrder The purchase order to return.
+     * @return The report.
      */
-    private void completeReceiveStepWithPurchaseOrder(PendingReceiveStep stepInfo, String purchaseOrder) {
+    private TAR createPurchaseOrderReport(String purchaseOrder) {
         TAR report = utils.createReport(TestResultType.SUCCESS);
         report.getContext().getItem().add(utils.createAnyContentSimple("purchaseOrder", purchaseOrder, ValueEmbeddingEnumeration.STRING));
-        testBedNotifier.notifyTestBed(stepInfo.sessionId(), stepInfo.callId(), stepInfo.callbackAddress(), report);
+        return report;
     }
 
     /**
@@ -0,0 +1,63 @@
+package org.test.gitb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.test.state.StateSnapshot;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Component providing snapshots of the StateManager's state for inspection.
+ * <p/>
+ * Snapshots are shared between readers and only retaken when the state has changed and the current snapshot is
+ * older than the configured maximum age. Taking a snapshot copies the whole state while holding the StateManager's
+ * lock, so the reader doing it waits for the lock and delays the processing of messages and steps for the duration of
+ * the copy. Only a single reader at a time refreshes the snapshot while others keep using the previous one without
+ * waiting (except for the very first snapshot, which concurrent first readers wait for). Frequent polling therefore
+ * contends with the StateManager at most once per maximum age period, regardless of the number of readers.
+ */
+@Component
+public class StateSnapshotProvider {
+
+    @Autowired
+    private StateManager stateManager = null;
+
+    @Value("${admin.snapshot.maxAge:1000}")
+    private long maxAge;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile StateSnapshot current;
+
+    /**
+     * Get a snapshot of the state.
+     *
+     * @return The snapshot (possibly up to the maximum age behind the current state).
+     */
+    public StateSnapshot get() {
+        StateSnapshot snapshot = current;
+        if (snapshot == null) {
+            // First request - take the initial snapshot.
+            synchronized (this) {
+                if (current == null) {
+                    current = stateManager.snapshot();
+                }
+                return current;
+            }
+        }
+        if (snapshot.version() != stateManager.getVersion()
+                && Duration.between(snapshot.takenAt(), Instant.now()).toMillis() >= maxAge
+                && refreshing.compareAndSet(false, true)) {
+            try {
+                snapshot = stateManager.snapshot();
+                current = snapshot;
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return snapshot;
+    }
+
+}
@@ -7,22 +7,33 @@ import com.gitb.ms.NotifyForMessageRequest;
 import com.gitb.tr.TAR;
 import com.gitb.tr.TestResultType;
 import org.apache.cxf.endpoint.Client;
+import org.apache.cxf.endpoint.ClientCallback;
 import org.apache.cxf.frontend.ClientProxy;
 import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
 import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transport.http.asyncclient.hc5.AsyncHTTPConduit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Component used to notify the Test Bed of received queries.
  * <p/>
- * The main reason of defining this as a separate component is to facilitate making these notifications asynchronous
- * (see the notifyTestBed method that is marked as async).
+ * Calls to the Test Bed are made asynchronously using CXF's asynchronous client invocations over its non-blocking
+ * HTTP transport (based on Apache HttpClient 5). Callers are therefore never blocked for the duration of a call and
+ * in-flight calls do not hold threads while waiting for the Test Bed, so that many concurrent notifications to slow
+ * Test Beds only need a few threads. Each call returns a future completed when the Test Bed has responded.
+ * <p/>
+ * Redirects from the Test Bed are followed by default (as needed for Test Beds reached through a redirect). Checking
+ * for redirects however makes CXF wait for the response on the calling thread (even for asynchronous invocations),
+ * blocking callers for the whole call. Where the Test Bed is reached directly, following redirects can be disabled
+ * (property "testbed.followRedirects") so that callers are never blocked.
  * <p/>
  * As an example, the configuration of a proxy to be used for this call is provided that can be optionally set on the
  * call-back service proxy via configuration properties (set in application.properties).
@@ -38,6 +49,9 @@ public class TestBedNotifier {
     private ProxyInfo proxy = null;
     @Autowired
     private Utils utils = null;
+    @Value("${testbed.followRedirects:true}")
+    private boolean followRedirects = true;
+
     /**
      * Send a log message to the Test Bed at a given severity level.
      *
@@ -45,33 +59,39 @@ public class TestBedNotifier {
      * @param callbackAddress The Test Bed's callback address to use.
      * @param message The log message.
      * @param level The severity level.
+     * @return The future completed once the Test Bed received the message.
      */
-    @Async
-    public void sendLogMessage(String sessionId, String callbackAddress, String message, LogLevel level) {
+    public CompletableFuture<Void> sendLogMessage(String sessionId, String callbackAddress, String message, LogLevel level) {
         var logRequest = new LogRequest();
         logRequest.setSessionId(sessionId);
         logRequest.setMessage(message);
         logRequest.setLevel(level);
-        getMessagingClient(callbackAddress).log(logRequest);
+        return invoke(callbackAddress, "log", logRequest).whenComplete((result, error) -> {
+            if (error != null) {
+                LOG.warn("Error while sending log message to test bed for session [{}]", sessionId, error);
+            }
+        });
     }
 
     /**
      * Notify the Test Bed for a given session.
+     * <p/>
+     * If the notification fails, the Test Bed is notified with a failure report instead.
      *
      * @param sessionId The session ID to notify the test bed for.
      * @param callId The 'receive' call ID to notify the Test Bed for.
      * @param report The report to notify the Test Bed with.
+     * @return The future completed once the Test Bed was notified (completed exceptionally if the notification failed).
      */
-    @Async
-    public void notifyTestBed(String sessionId, String callId, String callback, TAR report){
-        try {
-            LOG.info("Notifying Test Bed for session [{}]", sessionId);
-            callTestBed(sessionId, callId, report, callback);
-        } catch (Exception e) {
-            LOG.warn("Error while notifying test bed for session [{}]", sessionId, e);
-            callTestBed(sessionId, callId, utils.createReport(TestResultType.FAILURE), callback);
-            throw new IllegalStateException(e);
-        }
+    public CompletableFuture<Void> notifyTestBed(String sessionId, String callId, String callback, TAR report){
+        LOG.info("Notifying Test Bed for session [{}]", sessionId);
+        return callTestBed(sessionId, callId, report, callback).exceptionallyCompose(error -> {
+            LOG.warn("Error while notifying test bed for session [{}]", sessionId, error);
+            return callTestBed(sessionId, callId, utils.createReport(TestResultType.FAILURE), callback)
+                    .handle((result, failureError) -> {
+                        throw new IllegalStateException(error);
+                    });
+        });
     }
 
     /**
@@ -81,18 +101,52 @@ public class TestBedNotifier {
      * @param callId The 'receive' call ID to notify the test bed for.
      * @param report The TAR report to send back.
      * @param callbackAddress The address on which the call is to be made.
+     * @return The call's future.
      */
-    private void callTestBed(String sessionId, String callId, TAR report, String callbackAddress) {
+    private CompletableFuture<Void> callTestBed(String sessionId, String callId, TAR report, String callbackAddress) {
         // Make the call.
         NotifyForMessageRequest request = new NotifyForMessageRequest();
         request.setSessionId(sessionId);
         request.setCallId(callId);
         request.setReport(report);
-        getMessagingClient(callbackAddress).notifyForMessage(request);
+        return invoke(callbackAddress, "notifyForMessage", request);
+    }
+
+    /**
+     * Invoke an operation of the Test Bed's messaging callback service asynchronously.
+     *
+     * @param callbackAddress The Test Bed's messaging callback address.
+     * @param operation The operation's name.
+     * @param request The operation's request.
+     * @return The future completed when the Test Bed responds.
+     */
+    private CompletableFuture<Void> invoke(String callbackAddress, String operation, Object request) {
+        var future = new CompletableFuture<Void>();
+        try {
+            ClientProxy.getClient(getMessagingClient(callbackAddress)).invoke(new ClientCallback() {
+                @Override
+                public void handleResponse(Map<String, Object> context, Object[] result) {
+                    super.handleResponse(context, result);
+                    future.complete(null);
+                }
+
+                @Override
+                public void handleException(Map<String, Object> context, Throwable error) {
+                    super.handleException(context, error);
+                    future.completeExceptionally(error);
+                }
+            }, operation, request);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
     }
 
     /**
      * Get the messaging client to use for the given Test Bed instance.
+     * <p/>
+     * The service proxies are cached (rather than their underlying CXF clients) given that CXF destroys a proxy's
+     * client once the proxy itself is no longer referenced.
      *
      * @param callbackAddress The Test Bed's messaging callback address.
      * @return The client.
@@ -104,8 +158,11 @@ public class TestBedNotifier {
             proxyFactoryBean.setAddress(callbackAddress);
             MessagingClient serviceProxy = (MessagingClient)proxyFactoryBean.create();
             Client client = ClientProxy.getClient(serviceProxy);
+            // Always use the non-blocking transport.
+            client.getRequestContext().put(AsyncHTTPConduit.USE_ASYNC, Boolean.TRUE);
             HTTPConduit httpConduit = (HTTPConduit) client.getConduit();
-            httpConduit.getClient().setAutoRedirect(true);
+            // Following redirects blocks the caller until the response is received (see class comment).
+            httpConduit.getClient().setAutoRedirect(followRedirects);
             // Apply proxy settings (if applicable).
             if (proxy.isEnabled()) {
                 proxy.applyToCxfConduit(httpConduit);
@@ -114,4 +171,4 @@ public class TestBedNotifier {
         });
     }
 
-}
\ No newline at end of file
+}
@@ -173,6 +173,83 @@ public class Utils {
         return asString(getSingleRequiredInputForName(parameterItems, inputName));
     }
 
+    /**
+     * Get all string values provided for the given input name.
+     * <p/>
+     * The input may be repeated, and each occurrence may also be a list whose items are included in order.
+     *
+     * @param parameterItems The items to look through.
+     * @param inputName The name of the input to look for.
+     * @return The inputs' string values (at least one).
+     */
+    public List<String> getRequiredStrings(List<AnyContent> parameterItems, String inputName) {
+        List<String> values = new ArrayList<>();
+        for (AnyContent input: getInputsForName(parameterItems, inputName)) {
+            if ("list".equals(input.getType())) {
+                input.getItem().forEach(item -> values.add(asString(item)));
+            } else {
+                values.add(asString(input));
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No input named [%s] was found.", inputName));
+        }
+        return values;
+    }
+
+    /**
+     * Get all map values provided for the given input name.
+     * <p/>
+     * The input may be repeated, and each occurrence may also be a list of maps. Map entries are converted to plain
+     * Java values, with nested maps and lists converted recursively.
+     *
+     * @param parameterItems The items to look through.
+     * @param inputName The name of the input to look for.
+     * @return The maps (empty if the input was not provided).
+     */
+    public List<Map<String, Object>> getMaps(List<AnyContent> parameterItems, String inputName) {
+        List<Map<String, Object>> values = new ArrayList<>();
+        for (AnyContent input: getInputsForName(parameterItems, inputName)) {
+            if ("list".equals(input.getType())) {
+                input.getItem().forEach(item -> values.add(asMap(item)));
+            } else {
+                values.add(asMap(input));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Convert the provided map content to a map of plain Java values.
+     *
+     * @param content The content to convert.
+     * @return The map.
+     */
+    public Map<String, Object> asMap(AnyContent content) {
+        if (!"map".equals(content.getType())) {
+            throw new IllegalArgumentException(String.format("Input [%s] was expected to be a map.", content.getName()));
+        }
+        Map<String, Object> map = new LinkedHashMap<>();
+        content.getItem().forEach(item -> map.put(item.getName(), asObject(item)));
+        return map;
+    }
+
+    /**
+     * Convert the provided content to a plain Java value (a string, list or map).
+     *
+     * @param content The content to convert.
+     * @return The value.
+     */
+    public Object asObject(AnyContent content) {
+        if ("map".equals(content.getType())) {
+            return asMap(content);
+        } else if ("list".equals(content.getType())) {
+            return content.getItem().stream().map(this::asObject).toList();
+        } else {
+            return asString(content);
+        }
+    }
+
     /**
      * Get a single required input for the provided name as a binary value.
      *
@@ -0,0 +1,109 @@
+package org.test.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logback filter limiting the rate of log events for high-frequency logging categories.
+ * <p/>
+ * For each configured category (a logger name, also covering its child loggers), at most the configured number of
+ * events per second are logged and further events within the same second are dropped. Warnings and errors are never
+ * dropped, so that diagnostic detail is kept for failures.
+ * <p/>
+ * The filter is evaluated for every logging call, so it only uses lock-free structures: each category's current
+ * second and event count are packed in a single atomic value.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    /** Marker for loggers outside the sampled categories. */
+    private static final AtomicLong NOT_SAMPLED = new AtomicLong();
+
+    private final List<String> categories = new ArrayList<>();
+    private final Map<String, AtomicLong> windowsByLogger = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> windowsByCategory = new ConcurrentHashMap<>();
+    private int maxPerSecond = 50;
+
+    /**
+     * Set the sampled categories.
+     *
+     * @param categories The comma-separated logger names.
+     */
+    public void setCategories(String categories) {
+        for (String category: categories.split(",")) {
+            if (!category.isBlank()) {
+                this.categories.add(category.trim());
+            }
+        }
+    }
+
+    /**
+     * Set the number of events per second logged for each category (zero or less disables sampling).
+     *
+     * @param maxPerSecond The maximum number of events per second.
+     */
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (format == null || level.isGreaterOrEqual(Level.WARN) || maxPerSecond <= 0 || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            // Level checks, warnings, errors and events the logger would discard anyway are not sampled.
+            return FilterReply.NEUTRAL;
+        }
+        AtomicLong window = windowsByLogger.computeIfAbsent(logger.getName(), this::findWindow);
+        if (window == NOT_SAMPLED || tryAcquire(window, System.currentTimeMillis() / 1000)) {
+            return FilterReply.NEUTRAL;
+        }
+        return FilterReply.DENY;
+    }
+
+    /**
+     * Record an event in a category's window.
+     *
+     * @param window The category's window (the current second in the high 32 bits and the event count in the low ones).
+     * @param second The current second.
+     * @return Whether the event can be logged.
+     */
+    private boolean tryAcquire(AtomicLong window, long second) {
+        while (true) {
+            long state = window.get();
+            long next;
+            if ((state >>> 32) != second) {
+                next = (second << 32) | 1;
+            } else if ((int) state < maxPerSecond) {
+                next = state + 1;
+            } else {
+                return false;
+            }
+            if (window.compareAndSet(state, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Find the window of the category a logger belongs to.
+     *
+     * @param loggerName The logger's name.
+     * @return The window (NOT_SAMPLED if the logger is not in a sampled category).
+     */
+    private AtomicLong findWindow(String loggerName) {
+        for (String category: categories) {
+            if (loggerName.equals(category) || loggerName.startsWith(category + ".")) {
+                return windowsByCategory.computeIfAbsent(category, key -> new AtomicLong());
+            }
+        }
+        return NOT_SAMPLED;
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.test.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter logging requests that take longer than the configured threshold.
+ * <p/>
+ * Slow requests are logged as warnings, so that they are kept even when the regular logging of their category is
+ * sampled (see SamplingTurboFilter).
+ */
+@Component
+public class SlowRequestFilter extends OncePerRequestFilter {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(SlowRequestFilter.class);
+
+    @Value("${logging.slowRequest.threshold:1000}")
+    private long threshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (threshold <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (duration >= threshold) {
+                LOG.warn("Slow request [{} {}] from [{}] completed with status [{}] in [{}] ms", request.getMethod(), request.getRequestURI(), request.getRemoteAddr(), response.getStatus(), duration);
+            }
+        }
+    }
+
+}
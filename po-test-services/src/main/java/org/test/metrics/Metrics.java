@@ -0,0 +1,41 @@
+package org.test.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Component holding the service's metric counters.
+ * <p/>
+ * Counters are identified by name and created on first use. Incrementing a counter does not block, making this
+ * suitable for use on request processing paths.
+ */
+@Component
+public class Metrics {
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Increment a counter.
+     *
+     * @param name The counter's name.
+     */
+    public void increment(String name) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Get the current values of all counters.
+     *
+     * @return The counter values by name.
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+}
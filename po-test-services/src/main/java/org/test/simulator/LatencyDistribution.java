@@ -0,0 +1,57 @@
+package org.test.simulator;
+
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * The distributions from which the SUT simulator draws response latencies.
+ */
+public enum LatencyDistribution {
+
+    /** Always the mean latency. */
+    FIXED,
+    /** Uniformly distributed between the minimum and maximum latencies. */
+    UNIFORM,
+    /** Exponentially distributed around the mean latency (as for independent arrivals). */
+    EXPONENTIAL,
+    /** Log-normally distributed around the mean latency, producing the long tail typical of real services. */
+    LOGNORMAL;
+
+    /**
+     * Draw a latency from the distribution.
+     * <p/>
+     * The result is always clamped between the minimum and maximum latencies.
+     *
+     * @param random The random generator to use.
+     * @param mean The mean latency in milliseconds.
+     * @param min The minimum latency in milliseconds.
+     * @param max The maximum latency in milliseconds.
+     * @param sigma The standard deviation of the latency's logarithm (for the log-normal distribution).
+     * @return The latency in milliseconds.
+     */
+    public long sample(RandomGenerator random, double mean, long min, long max, double sigma) {
+        double value = switch (this) {
+            case FIXED -> mean;
+            case UNIFORM -> min + random.nextDouble() * (max - min);
+            case EXPONENTIAL -> random.nextExponential() * mean;
+            // Choose the location so that the distribution's mean is the configured mean.
+            case LOGNORMAL -> mean <= 0 ? 0 : Math.exp(Math.log(mean) - (sigma * sigma) / 2 + sigma * random.nextGaussian());
+        };
+        return Math.max(min, Math.min(max, Math.round(value)));
+    }
+
+    /**
+     * Parse a distribution from its (case-insensitive) name.
+     *
+     * @param name The name.
+     * @return The distribution.
+     */
+    public static LatencyDistribution fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Unsupported latency distribution [%s].", name));
+        }
+    }
+
+}
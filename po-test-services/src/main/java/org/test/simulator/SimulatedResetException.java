@@ -0,0 +1,19 @@
+package org.test.simulator;
+
+import java.io.IOException;
+
+/**
+ * Exception used by the SUT simulator to abort a response part-way through, emulating a connection reset.
+ */
+public class SimulatedResetException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     */
+    public SimulatedResetException() {
+        super("Simulated connection reset");
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.test.simulator;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.ClientAbortException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filter closing the connection of simulated SUT responses aborted with a SimulatedResetException.
+ * <p/>
+ * Tomcat closes the connection of a committed response failing with a ClientAbortException, without logging an error
+ * or rendering an error page. Spring MVC however quietly completes responses failing with a ClientAbortException (as
+ * it considers the client gone), so the simulator fails its responses with its own exception that is only translated
+ * here, once past Spring MVC. The filter also applies to async dispatches, through which simulated responses complete.
+ */
+@Component
+@Profile(SimulatorConfig.PROFILE)
+public class SimulatedResetFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } catch (SimulatedResetException e) {
+            throw new ClientAbortException(e);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/simulator/");
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+}
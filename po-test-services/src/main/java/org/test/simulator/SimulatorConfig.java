@@ -0,0 +1,198 @@
+package org.test.simulator;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Class used to hold the SUT simulator's configuration.
+ * <p/>
+ * Rates are expressed as fractions of requests (from 0 to 1) and durations in milliseconds. The configuration is
+ * validated at startup, so that invalid values fail the simulator's startup rather than each simulated response.
+ */
+@Component
+@Profile(SimulatorConfig.PROFILE)
+public class SimulatorConfig {
+
+    /** The Spring profile enabling the SUT simulator. */
+    public static final String PROFILE = "sut-simulator";
+
+    @Value("${simulator.latency.distribution:fixed}")
+    private String latencyDistributionName;
+    private LatencyDistribution latencyDistribution;
+
+    @Value("${simulator.latency.mean:0}")
+    private double latencyMean;
+
+    @Value("${simulator.latency.min:0}")
+    private long latencyMin;
+
+    @Value("${simulator.latency.max:10000}")
+    private long latencyMax;
+
+    @Value("${simulator.latency.sigma:1.0}")
+    private double latencySigma;
+
+    @Value("${simulator.errorRate:0}")
+    private double errorRate;
+
+    @Value("${simulator.errorStatus:500}")
+    private int errorStatus;
+
+    @Value("${simulator.resetRate:0}")
+    private double resetRate;
+
+    @Value("${simulator.slowBody.rate:0}")
+    private double slowBodyRate;
+
+    @Value("${simulator.slowBody.chunks:10}")
+    private int slowBodyChunks;
+
+    @Value("${simulator.slowBody.chunkSize:1024}")
+    private int slowBodyChunkSize;
+
+    @Value("${simulator.slowBody.chunkDelay:100}")
+    private long slowBodyChunkDelay;
+
+    /**
+     * Parse and validate the configuration.
+     */
+    @PostConstruct
+    public void init() {
+        latencyDistribution = LatencyDistribution.fromName(latencyDistributionName);
+        if (latencyMean < 0 || latencyMin < 0 || latencyMax < latencyMin || latencySigma < 0) {
+            throw new IllegalArgumentException(String.format("Invalid simulated latencies (mean [%s], min [%s], max [%s], sigma [%s]).", latencyMean, latencyMin, latencyMax, latencySigma));
+        }
+        checkRate("simulator.errorRate", errorRate);
+        checkRate("simulator.resetRate", resetRate);
+        checkRate("simulator.slowBody.rate", slowBodyRate);
+        if (errorStatus < 100 || errorStatus > 599) {
+            throw new IllegalArgumentException(String.format("Invalid simulated error status [%s].", errorStatus));
+        }
+        if (slowBodyChunks < 0 || slowBodyChunkSize < 0 || slowBodyChunkDelay < 0) {
+            throw new IllegalArgumentException(String.format("Invalid slow body settings (chunks [%s], chunk size [%s], chunk delay [%s]).", slowBodyChunks, slowBodyChunkSize, slowBodyChunkDelay));
+        }
+    }
+
+    /**
+     * Check that a rate is a fraction of requests.
+     *
+     * @param name The rate's property.
+     * @param rate The rate.
+     */
+    private void checkRate(String name, double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException(String.format("The rate [%s] must be between 0 and 1 but was [%s].", name, rate));
+        }
+    }
+
+    /**
+     * Get the distribution response latencies are drawn from.
+     *
+     * @return The distribution.
+     */
+    public LatencyDistribution getLatencyDistribution() {
+        return latencyDistribution;
+    }
+
+    /**
+     * Get the mean response latency.
+     *
+     * @return The mean latency.
+     */
+    public double getLatencyMean() {
+        return latencyMean;
+    }
+
+    /**
+     * Get the minimum response latency.
+     *
+     * @return The minimum latency.
+     */
+    public long getLatencyMin() {
+        return latencyMin;
+    }
+
+    /**
+     * Get the maximum response latency.
+     *
+     * @return The maximum latency.
+     */
+    public long getLatencyMax() {
+        return latencyMax;
+    }
+
+    /**
+     * Get the standard deviation of the latency's logarithm for log-normal latencies.
+     *
+     * @return The sigma.
+     */
+    public double getLatencySigma() {
+        return latencySigma;
+    }
+
+    /**
+     * Get the fraction of requests answered with an error status.
+     *
+     * @return The error rate.
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Get the status returned for simulated errors.
+     *
+     * @return The status.
+     */
+    public int getErrorStatus() {
+        return errorStatus;
+    }
+
+    /**
+     * Get the fraction of requests for which the connection is dropped while responding.
+     *
+     * @return The reset rate.
+     */
+    public double getResetRate() {
+        return resetRate;
+    }
+
+    /**
+     * Get the fraction of responses whose body is streamed slowly.
+     *
+     * @return The slow body rate.
+     */
+    public double getSlowBodyRate() {
+        return slowBodyRate;
+    }
+
+    /**
+     * Get the number of padding chunks streamed for slow bodies.
+     *
+     * @return The number of chunks.
+     */
+    public int getSlowBodyChunks() {
+        return slowBodyChunks;
+    }
+
+    /**
+     * Get the size in bytes of each padding chunk streamed for slow bodies.
+     *
+     * @return The chunk size.
+     */
+    public int getSlowBodyChunkSize() {
+        return slowBodyChunkSize;
+    }
+
+    /**
+     * Get the delay between the chunks of slow bodies.
+     *
+     * @return The delay.
+     */
+    public long getSlowBodyChunkDelay() {
+        return slowBodyChunkDelay;
+    }
+
+}
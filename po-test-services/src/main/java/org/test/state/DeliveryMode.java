@@ -0,0 +1,13 @@
+package org.test.state;
+
+/**
+ * The ways in which a received SUT message is delivered to the test sessions expecting it.
+ */
+public enum DeliveryMode {
+
+    /** The message completes a single pending 'receive' step (of the earliest created session expecting it). */
+    FIRST_MATCH,
+    /** The message completes a pending 'receive' step in every session expecting it. */
+    BROADCAST
+
+}
@@ -0,0 +1,17 @@
+package org.test.state;
+
+import java.time.Instant;
+
+/**
+ * Information on an order received from a SUT, as recorded against its reference.
+ *
+ * @param reference The reference returned for the order.
+ * @param vatNumber The order's VAT number.
+ * @param clientAddress The address of the SUT that sent the order.
+ * @param receivedAt The time the order was received.
+ * @param contentLength The length of the order's content.
+ * @param content The order's content (truncated if longer than the configured limit, null if the total limit of
+ *                retained contents was reached when it was received).
+ */
+public record ReceivedOrder(String reference, String vatNumber, String clientAddress, Instant receivedAt, int contentLength, String content) {
+}
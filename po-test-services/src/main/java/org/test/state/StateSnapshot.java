@@ -0,0 +1,26 @@
+package org.test.state;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable point-in-time copy of the state held by the StateManager.
+ *
+ * @param version The state version the snapshot was taken at.
+ * @param takenAt The time the snapshot was taken.
+ * @param sessions The active sessions.
+ * @param sutMessages The parked SUT messages.
+ */
+public record StateSnapshot(long version, Instant takenAt, List<Session> sessions, List<SutMessage> sutMessages) {
+
+    /**
+     * Information on an active session.
+     *
+     * @param sessionId The test session identifier.
+     * @param callbackURL The Test Bed's callback address.
+     * @param pendingSteps The session's pending 'receive' steps.
+     */
+    public record Session(String sessionId, String callbackURL, List<PendingReceiveStep> pendingSteps) {
+    }
+
+}
@@ -0,0 +1,228 @@
+package org.test.sut;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Component used to track the latencies of SUT endpoints and derive the time allowed for calls to them.
+ * <p/>
+ * Latencies are kept per endpoint over a sliding window (see SlidingLatencyWindow). Once enough calls were made to an
+ * endpoint within the window, its calls are given a deadline of the observed 99th percentile multiplied by the
+ * configured factor (within configured bounds), so that a hung SUT is given up on quickly while slower SUTs are given
+ * the time they usually need. Until then, and when adaptive deadlines are disabled, calls are given the fixed request
+ * deadline.
+ * <p/>
+ * The same latencies determine the delay after which hedged calls are duplicated (see SutDispatcher). Latencies only
+ * need to be recorded when adaptive deadlines are enabled or calls are hedged (see {@link #isAdaptive()}).
+ * <p/>
+ * To keep the memory used per endpoint small, latencies are tracked in milliseconds up to the request deadline with a
+ * coarse precision (about 6%), which suffices for deriving deadlines and hedge delays. The percentiles of an endpoint
+ * are computed once per slice of its window and reused until the window advances (or, while too few latencies were
+ * recorded, until enough were). At most the configured number of
+ * endpoints is tracked: endpoints not called within the window are discarded to track new ones, and new endpoints are
+ * not tracked (i.e. given the fixed request deadline and not hedged) while none can be discarded.
+ */
+@Component
+public class AdaptiveDeadlines {
+
+    /** The number of slices of each endpoint's latency window. */
+    private static final int WINDOW_SLICES = 6;
+    /** The precision of each endpoint's latency histograms (16 sub-buckets per power-of-two range). */
+    private static final int PRECISION_BITS = 4;
+
+    @Value("${sut.deadline.adaptive:false}")
+    private boolean adaptive;
+
+    @Value("${sut.deadline.factor:3.0}")
+    private double factor;
+
+    @Value("${sut.deadline.min:1000}")
+    private long minDeadline;
+
+    @Value("${sut.request.deadline:60000}")
+    private long maxDeadline;
+
+    @Value("${sut.deadline.minSamples:20}")
+    private int minSamples;
+
+    @Value("${sut.hedge.percentile:95}")
+    private double hedgePercentile;
+
+    @Value("${sut.latency.window:60000}")
+    private long window;
+
+    @Value("${sut.latency.maxTrackedEndpoints:1000}")
+    private int maxTrackedEndpoints;
+
+    private final ConcurrentHashMap<String, EndpointLatencies> latencies = new ConcurrentHashMap<>();
+    /** The earliest time at which an eviction scan can find an idle endpoint. */
+    private final AtomicLong nextEviction = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Check whether adaptive deadlines are enabled.
+     * <p/>
+     * When disabled, latencies only need to be recorded for hedged calls.
+     *
+     * @return The check result.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Record the latency of a call to an endpoint.
+     *
+     * @param endpoint The endpoint.
+     * @param latency The call's latency.
+     */
+    public void record(String endpoint, Duration latency) {
+        long now = System.nanoTime();
+        EndpointLatencies endpointLatencies = latencies.get(endpoint);
+        if (endpointLatencies == null) {
+            if (latencies.size() >= maxTrackedEndpoints && evictIdle(now) >= maxTrackedEndpoints) {
+                return;
+            }
+            endpointLatencies = latencies.computeIfAbsent(endpoint, key -> new EndpointLatencies(now));
+        }
+        endpointLatencies.record(latency.toMillis(), now);
+    }
+
+    /**
+     * Get the time allowed for a call to an endpoint.
+     *
+     * @param endpoint The endpoint.
+     * @return The timeout.
+     */
+    public Duration timeoutFor(String endpoint) {
+        if (adaptive) {
+            Estimates estimates = estimatesFor(endpoint);
+            if (estimates != null && estimates.deadline() != null) {
+                return estimates.deadline();
+            }
+        }
+        return Duration.ofMillis(maxDeadline);
+    }
+
+    /**
+     * Get the delay after which a call to an endpoint should be duplicated.
+     *
+     * @param endpoint The endpoint.
+     * @return The delay (null if too few latencies were recorded for the endpoint).
+     */
+    public Duration hedgeDelayFor(String endpoint) {
+        Estimates estimates = estimatesFor(endpoint);
+        return estimates == null ? null : estimates.hedgeDelay();
+    }
+
+    /**
+     * Get the estimates derived from the latencies recorded for an endpoint.
+     *
+     * @param endpoint The endpoint.
+     * @return The estimates (null if the endpoint is not tracked).
+     */
+    private Estimates estimatesFor(String endpoint) {
+        EndpointLatencies endpointLatencies = latencies.get(endpoint);
+        return endpointLatencies == null ? null : endpointLatencies.estimates(System.nanoTime());
+    }
+
+    /**
+     * Discard the latency windows of endpoints not called within the window.
+     * <p/>
+     * Scans are skipped until the earliest time a remaining window becomes empty, as they could not discard anything.
+     *
+     * @param now The current time (as per System.nanoTime).
+     * @return The number of tracked endpoints after the eviction.
+     */
+    private int evictIdle(long now) {
+        long scheduled = nextEviction.get();
+        if (now < scheduled || !nextEviction.compareAndSet(scheduled, Long.MAX_VALUE)) {
+            // Not yet due, or another thread is scanning.
+            return latencies.size();
+        }
+        long earliest = Long.MAX_VALUE;
+        for (var iterator = latencies.values().iterator(); iterator.hasNext(); ) {
+            SlidingLatencyWindow endpointWindow = iterator.next().latencyWindow;
+            if (endpointWindow.isIdle(now)) {
+                iterator.remove();
+            } else {
+                earliest = Math.min(earliest, endpointWindow.getIdleAt());
+            }
+        }
+        nextEviction.set(earliest == Long.MAX_VALUE ? now : earliest);
+        return latencies.size();
+    }
+
+    /**
+     * The latencies tracked for an endpoint, with the estimates last derived from them.
+     */
+    private class EndpointLatencies {
+
+        private final SlidingLatencyWindow latencyWindow;
+        /** The number of latencies recorded since the endpoint is tracked. */
+        private final AtomicLong recorded = new AtomicLong();
+        private volatile Estimates estimates = null;
+
+        /**
+         * Constructor.
+         *
+         * @param now The current time (as per System.nanoTime).
+         */
+        EndpointLatencies(long now) {
+            this.latencyWindow = new SlidingLatencyWindow(Duration.ofMillis(window), WINDOW_SLICES, PRECISION_BITS, maxDeadline, now);
+        }
+
+        /**
+         * Record a latency.
+         *
+         * @param millis The latency in milliseconds.
+         * @param now The current time (as per System.nanoTime).
+         */
+        void record(long millis, long now) {
+            latencyWindow.record(millis, now);
+            recorded.incrementAndGet();
+        }
+
+        /**
+         * Get the endpoint's estimates, deriving them again if the window advanced since they were last derived, or if
+         * enough latencies were recorded since too few were found.
+         *
+         * @param now The current time (as per System.nanoTime).
+         * @return The estimates.
+         */
+        Estimates estimates(long now) {
+            long slice = latencyWindow.sliceOf(now);
+            long recordedCount = recorded.get();
+            Estimates current = estimates;
+            if (current == null || current.slice() != slice || (current.deadline() == null && recordedCount >= current.sufficientAt())) {
+                LatencyHistogram histogram = latencyWindow.snapshot(now);
+                if (histogram.getTotalCount() < minSamples) {
+                    current = new Estimates(slice, recordedCount + minSamples - histogram.getTotalCount(), null, null);
+                } else {
+                    long deadline = (long) (histogram.getValueAtPercentile(99.0) * factor);
+                    current = new Estimates(slice, recordedCount,
+                            Duration.ofMillis(Math.max(minDeadline, Math.min(maxDeadline, deadline))),
+                            Duration.ofMillis(Math.max(1, histogram.getValueAtPercentile(hedgePercentile))));
+                }
+                estimates = current;
+            }
+            return current;
+        }
+
+    }
+
+    /**
+     * The estimates derived from an endpoint's latencies.
+     *
+     * @param slice The time slice of the window from which they were derived.
+     * @param sufficientAt The number of recorded latencies from which enough are within the window (if too few were).
+     * @param deadline The adaptive deadline (null if too few latencies were recorded).
+     * @param hedgeDelay The hedge delay (null if too few latencies were recorded).
+     */
+    private record Estimates(long slice, long sufficientAt, Duration deadline, Duration hedgeDelay) {
+    }
+
+}
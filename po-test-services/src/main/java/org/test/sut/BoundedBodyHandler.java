@@ -0,0 +1,233 @@
+package org.test.sut;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Response body handler that reads SUT responses with bounded memory and time.
+ * <p/>
+ * At most the capture limit of body bytes is kept. Once the limit is reached the rest of the body is either read
+ * and discarded (when a digest of the full body is needed, or when draining is requested to keep the connection
+ * reusable) or the response is abandoned. In all cases reading stops at the request's deadline.
+ */
+public class BoundedBodyHandler implements HttpResponse.BodyHandler<CapturedBody> {
+
+    /** Marker appended to captured bodies that were truncated. */
+    public static final String TRUNCATION_MARKER = "[... truncated after %s bytes]";
+
+    /**
+     * Timer aborting bodies not read by their deadline. Aborts are cancelled (and removed) as soon as their body is
+     * completed, so that completed bodies are not retained until their deadline.
+     */
+    private static final ScheduledThreadPoolExecutor DEADLINE_TIMER = createDeadlineTimer();
+
+    private final int captureLimit;
+    private final String digestAlgorithm;
+    private final boolean drain;
+    private final long deadlineNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param captureLimit The maximum number of body bytes to keep.
+     * @param digestAlgorithm The algorithm of the digest to calculate over the full body (null for no digest).
+     * @param drain Whether to keep reading the body after the capture limit is reached.
+     * @param deadlineNanos The time (as per System.nanoTime) at which reading must stop.
+     */
+    public BoundedBodyHandler(int captureLimit, String digestAlgorithm, boolean drain, long deadlineNanos) {
+        this.captureLimit = Math.max(0, captureLimit);
+        this.digestAlgorithm = digestAlgorithm;
+        this.drain = drain || digestAlgorithm != null;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<CapturedBody> apply(HttpResponse.ResponseInfo responseInfo) {
+        Charset charset = responseInfo.headers().firstValue("Content-Type")
+                .flatMap(BoundedBodyHandler::charsetOf)
+                .orElse(StandardCharsets.UTF_8);
+        var subscriber = new BoundedBodySubscriber(charset);
+        ScheduledFuture<?> abort = DEADLINE_TIMER.schedule(subscriber::abort, Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        subscriber.result.whenComplete((body, error) -> abort.cancel(false));
+        return subscriber;
+    }
+
+    /**
+     * Create the timer used to abort bodies at their deadline.
+     *
+     * @return The timer.
+     */
+    private static ScheduledThreadPoolExecutor createDeadlineTimer() {
+        var timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "sut-body-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Extract the charset from a content type.
+     *
+     * @param contentType The content type header's value.
+     * @return The charset (if specified and supported).
+     */
+    private static Optional<Charset> charsetOf(String contentType) {
+        for (String part: contentType.split(";")) {
+            String trimmed = part.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                try {
+                    return Optional.of(Charset.forName(trimmed.substring(8).replace("\"", "").trim()));
+                } catch (IllegalArgumentException e) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Subscriber that captures the body up to the limit.
+     */
+    private class BoundedBodySubscriber implements HttpResponse.BodySubscriber<CapturedBody> {
+
+        private final CompletableFuture<CapturedBody> result = new CompletableFuture<>();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        private final Charset charset;
+        private final MessageDigest digest;
+        private volatile Flow.Subscription subscription;
+        private long size = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param charset The charset with which to decode the captured bytes.
+         */
+        BoundedBodySubscriber(Charset charset) {
+            this.charset = charset;
+            try {
+                this.digest = (digestAlgorithm == null) ? null : MessageDigest.getInstance(digestAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(String.format("Unsupported digest algorithm [%s].", digestAlgorithm), e);
+            }
+        }
+
+        @Override
+        public CompletionStage<CapturedBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (completed.get()) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer: buffers) {
+                size += buffer.remaining();
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+                int toCapture = Math.min(buffer.remaining(), captureLimit - captured.size());
+                if (toCapture > 0) {
+                    byte[] bytes = new byte[toCapture];
+                    buffer.get(bytes);
+                    captured.write(bytes, 0, toCapture);
+                }
+            }
+            if (size > captureLimit && !drain) {
+                // Limit reached and nothing more needed from the body.
+                subscription.cancel();
+                complete();
+            } else if (!completed.get()) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (completed.compareAndSet(false, true)) {
+                result.completeExceptionally(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        /**
+         * Stop reading the body if it was not completely read before the deadline.
+         */
+        void abort() {
+            if (completed.compareAndSet(false, true)) {
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                result.completeExceptionally(new TimeoutException("The SUT response was not received within the request deadline."));
+            }
+        }
+
+        /**
+         * Complete the body with the captured content.
+         */
+        private void complete() {
+            if (completed.compareAndSet(false, true)) {
+                boolean truncated = size > captureLimit;
+                String text = decode(captured.toByteArray());
+                if (truncated) {
+                    text += TRUNCATION_MARKER.formatted(captureLimit);
+                }
+                String digestValue = (digest == null) ? null : HexFormat.of().formatHex(digest.digest());
+                result.complete(new CapturedBody(text, size, truncated, digestValue));
+            }
+        }
+
+        /**
+         * Decode the captured bytes, replacing malformed input (e.g. a character cut at the capture limit).
+         *
+         * @param bytes The bytes.
+         * @return The text.
+         */
+        private String decode(byte[] bytes) {
+            try {
+                CharBuffer chars = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .decode(ByteBuffer.wrap(bytes));
+                return chars.toString();
+            } catch (CharacterCodingException e) {
+                return new String(bytes, charset);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,12 @@
+package org.test.sut;
+
+/**
+ * The part of a SUT response body that was captured.
+ *
+ * @param text The captured body (ending with a marker if the body was truncated).
+ * @param size The number of body bytes that were read (which may exceed the captured bytes).
+ * @param truncated Whether the body was truncated to the capture limit.
+ * @param digest The hex-encoded digest of the full body (null if no digest was calculated).
+ */
+public record CapturedBody(String text, long size, boolean truncated, String digest) {
+}
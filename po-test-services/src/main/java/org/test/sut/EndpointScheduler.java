@@ -0,0 +1,185 @@
+package org.test.sut;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Component used to schedule outbound calls fairly across SUT endpoints and test sessions.
+ * <p/>
+ * The number of in-flight requests is limited per endpoint host (scheme, host and port), so that a slow SUT cannot
+ * consume all connections and threads, nor be overwhelmed by the test bed. Calls exceeding the limit are queued per
+ * test session and served round-robin across sessions, so that a session sending many calls to a host does not
+ * delay the calls of other sessions to the same host by more than one call per round. A host is only tracked while
+ * it has in-flight or queued calls.
+ */
+@Component
+public class EndpointScheduler {
+
+    /** The session key used for calls that are not linked to a test session. */
+    private static final String NO_SESSION = "";
+
+    @Value("${sut.endpoint.maxInFlight:8}")
+    private int maxInFlight;
+
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Run a task calling an endpoint once the endpoint's host has capacity for it.
+     * <p/>
+     * The host's capacity is held until the future returned by the task completes.
+     *
+     * @param endpoint The endpoint the task calls.
+     * @param sessionId The test session the call is made for (null if none).
+     * @param task The task to run, receiving the time spent waiting in the queue.
+     * @return The task's future result.
+     * @param <T> The type of result.
+     */
+    public <T> CompletableFuture<T> submit(String endpoint, String sessionId, Function<Duration, CompletableFuture<T>> task) {
+        String hostKey = toHostKey(endpoint);
+        if (hostKey == null) {
+            // Invalid endpoints are not scheduled - they will fail when the call is made.
+            return task.apply(Duration.ZERO);
+        }
+        var waiter = new Waiter(System.nanoTime());
+        HostQueue queue;
+        do {
+            queue = hosts.computeIfAbsent(hostKey, HostQueue::new);
+            // Retry if the queue was removed as idle since it was looked up.
+        } while (!queue.enqueue(sessionId == null ? NO_SESSION : sessionId, waiter));
+        HostQueue grantedQueue = queue;
+        return waiter.granted.thenCompose(waited -> {
+            CompletableFuture<T> result;
+            try {
+                result = task.apply(waited);
+            } catch (RuntimeException e) {
+                grantedQueue.release();
+                throw e;
+            }
+            return result.whenComplete((value, error) -> grantedQueue.release());
+        });
+    }
+
+    /**
+     * Determine the key of the host an endpoint belongs to.
+     *
+     * @param endpoint The endpoint.
+     * @return The key (null if the endpoint is not a valid absolute URI).
+     */
+    private String toHostKey(String endpoint) {
+        try {
+            URI uri = URI.create(endpoint);
+            if (uri.getScheme() == null || uri.getAuthority() == null) {
+                return null;
+            }
+            return (uri.getScheme() + "://" + uri.getAuthority()).toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A call waiting for capacity.
+     *
+     * @param enqueuedAt The time (in nanoseconds) the call was queued.
+     * @param granted The future completed with the queue wait time when the call can proceed.
+     */
+    private record Waiter(long enqueuedAt, CompletableFuture<Duration> granted) {
+
+        Waiter(long enqueuedAt) {
+            this(enqueuedAt, new CompletableFuture<>());
+        }
+
+        void grant() {
+            granted.complete(Duration.ofNanos(System.nanoTime() - enqueuedAt));
+        }
+
+    }
+
+    /**
+     * The in-flight calls and queued calls of a single host.
+     * <p/>
+     * Queued calls are kept per session, with sessions served in rotation. Waiters are always granted outside the
+     * lock, as granting them starts their calls. A queue removes itself from the tracked hosts once its last call
+     * completes, after which it accepts no more calls.
+     */
+    private class HostQueue {
+
+        private final String hostKey;
+        private final Map<String, ArrayDeque<Waiter>> queues = new HashMap<>();
+        private final ArrayDeque<String> rotation = new ArrayDeque<>();
+        private int inFlight;
+        private boolean removed;
+
+        /**
+         * Constructor.
+         *
+         * @param hostKey The key of the host.
+         */
+        HostQueue(String hostKey) {
+            this.hostKey = hostKey;
+        }
+
+        /**
+         * Queue a call, granting it immediately if the host has capacity.
+         *
+         * @param sessionId The call's session.
+         * @param waiter The call's waiter.
+         * @return False if the queue was removed and the call must be queued in the host's new queue.
+         */
+        boolean enqueue(String sessionId, Waiter waiter) {
+            synchronized (this) {
+                if (removed) {
+                    return false;
+                }
+                if (inFlight >= maxInFlight) {
+                    queues.computeIfAbsent(sessionId, key -> {
+                        rotation.addLast(key);
+                        return new ArrayDeque<>();
+                    }).addLast(waiter);
+                    return true;
+                }
+                inFlight += 1;
+            }
+            waiter.grant();
+            return true;
+        }
+
+        /**
+         * Release the capacity of a completed call, passing it to the next session's queued call if there is one.
+         */
+        void release() {
+            Waiter next;
+            synchronized (this) {
+                String sessionId = rotation.pollFirst();
+                if (sessionId == null) {
+                    inFlight -= 1;
+                    if (inFlight == 0) {
+                        removed = true;
+                        hosts.remove(hostKey, this);
+                    }
+                    return;
+                }
+                var sessionQueue = queues.get(sessionId);
+                next = sessionQueue.pollFirst();
+                if (sessionQueue.isEmpty()) {
+                    queues.remove(sessionId);
+                } else {
+                    rotation.addLast(sessionId);
+                }
+            }
+            next.grant();
+        }
+
+    }
+
+}
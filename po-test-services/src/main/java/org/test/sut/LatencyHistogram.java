@@ -0,0 +1,184 @@
+package org.test.sut;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe, high dynamic range histogram of latencies.
+ * <p/>
+ * Values are grouped in buckets using the same log-linear layout as HdrHistogram: each power-of-two range is split
+ * in a fixed number of linear sub-buckets, bounding the relative error of reported values across the whole range
+ * while using a fixed amount of memory. By default, latencies are recorded in microseconds with 128 sub-buckets (a
+ * relative error below 1%) and values above one hour are recorded as one hour, for about 26 KB per histogram. Many
+ * long-lived histograms should use a coarser layout (see the constructor with a precision and highest value).
+ */
+public class LatencyHistogram {
+
+    /** The default number of bits used to index sub-buckets within each half-range. */
+    private static final int DEFAULT_PRECISION_BITS = 7;
+    /** The default highest value that can be tracked (one hour in microseconds). */
+    public static final long MAX_VALUE = 3_600_000_000L;
+
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final int subBucketMask;
+    private final int leadingZeroCountBase;
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Create a histogram with the default layout.
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION_BITS, MAX_VALUE);
+    }
+
+    /**
+     * Create a histogram with a custom layout.
+     *
+     * @param precisionBits The number of bits of sub-bucket indexes within each half-range (2^bits sub-buckets per
+     *                      power-of-two range, for a relative error below 1 / 2^bits).
+     * @param highestTrackableValue The highest value that can be tracked (higher values are recorded as this value).
+     */
+    public LatencyHistogram(int precisionBits, long highestTrackableValue) {
+        if (precisionBits < 1 || precisionBits > 10 || highestTrackableValue < 1) {
+            throw new IllegalArgumentException("Histograms require a precision between 1 and 10 bits and a positive highest value.");
+        }
+        this.subBucketHalfCountMagnitude = precisionBits;
+        this.subBucketHalfCount = 1 << precisionBits;
+        this.subBucketMask = (subBucketHalfCount << 1) - 1;
+        this.leadingZeroCountBase = 64 - precisionBits - 1;
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(countsIndexFor(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latency The latency (negative values are recorded as zero).
+     */
+    public void record(long latency) {
+        long value = Math.min(Math.max(latency, 0), highestTrackableValue);
+        counts.incrementAndGet(countsIndexFor(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Add all values recorded in another histogram to this one.
+     *
+     * @param other The histogram to add (which must have the same layout).
+     */
+    public void add(LatencyHistogram other) {
+        if (other.subBucketHalfCountMagnitude != subBucketHalfCountMagnitude || other.counts.length() != counts.length()) {
+            throw new IllegalArgumentException("Only histograms with the same layout can be added.");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalValue.addAndGet(other.totalValue.get());
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Get the highest recorded value.
+     *
+     * @return The value.
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Get the mean of the recorded values.
+     *
+     * @return The mean (zero if no values were recorded).
+     */
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * Get the value at the given percentile.
+     * <p/>
+     * The returned value is the highest value equivalent to the bucket in which the percentile falls, capped to the
+     * highest recorded value.
+     *
+     * @param percentile The percentile (0 to 100).
+     * @return The value (zero if no values were recorded).
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Calculate the index in the counts array for a given value.
+     *
+     * @param value The value.
+     * @return The index.
+     */
+    private int countsIndexFor(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    /**
+     * Calculate the highest value that would be recorded at the given index in the counts array.
+     *
+     * @param index The index.
+     * @return The value.
+     */
+    private long highestEquivalentValue(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex << bucketIndex) + (1L << bucketIndex) - 1;
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.test.sut;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Component used to generate rate-controlled load against SUT endpoints.
+ * <p/>
+ * Requests follow an open model: each request has a scheduled start time derived from the target rate, and its
+ * latency is measured from that scheduled time rather than from when it was actually sent. If the SUT slows down
+ * and the concurrency limit delays sending, the delay is included in the recorded latencies, avoiding the
+ * coordinated omission that would otherwise hide the SUT's slowness.
+ */
+@Component
+public class LoadGenerator {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    @Value("${sut.load.concurrency:16}")
+    private int defaultConcurrency;
+
+    @Value("${sut.load.maxConcurrency:256}")
+    private int maxConcurrency;
+
+    @Value("${sut.load.maxRequests:100000}")
+    private long maxRequests;
+
+    @Value("${sut.load.maxDuration:600000}")
+    private long maxDuration;
+
+    @Autowired
+    private SutDispatcher sutDispatcher = null;
+
+    /**
+     * Run the given load profile, blocking until all its requests have completed.
+     *
+     * @param profile The load to generate.
+     * @return The run's measurements.
+     */
+    public LoadResult run(LoadProfile profile) {
+        if (profile.rate() <= 0) {
+            throw new IllegalArgumentException("The load rate must be a positive number.");
+        } else if (profile.duration().toMillis() > maxDuration) {
+            throw new IllegalArgumentException(String.format("The load duration of [%s] ms exceeds the maximum of [%s] ms.", profile.duration().toMillis(), maxDuration));
+        }
+        long requestCount = profile.requestCount();
+        if (requestCount < 1) {
+            throw new IllegalArgumentException("The load rate and duration must result in at least one request.");
+        } else if (requestCount > maxRequests) {
+            throw new IllegalArgumentException(String.format("The load rate and duration result in [%s] requests which exceeds the maximum of [%s].", requestCount, maxRequests));
+        }
+        int concurrency = Math.max(1, Math.min(profile.concurrency(), maxConcurrency));
+        long intervalNanos = (long) (1_000_000_000.0 / profile.rate());
+        var permits = new Semaphore(concurrency);
+        var latencies = new LatencyHistogram();
+        var statusCounts = new ConcurrentHashMap<Integer, LongAdder>();
+        var lastCompletion = new AtomicLong();
+        LOG.info("Starting load run of [{}] requests at [{}] requests/s with concurrency [{}]", requestCount, profile.rate(), concurrency);
+        long start = System.nanoTime();
+        for (long i = 0; i < requestCount; i++) {
+            long scheduledStart = start + i * intervalNanos;
+            // Wait for the request's scheduled start time.
+            long delay;
+            while ((delay = scheduledStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            permits.acquireUninterruptibly();
+            var call = new SutCall(
+                    (int) i,
+                    null,
+                    profile.endpoints().get((int) (i % profile.endpoints().size())),
+                    profile.payloads().get((int) (i % profile.payloads().size()))
+            );
+            sutDispatcher.sendAsync(call, false).whenComplete((result, error) -> {
+                long now = System.nanoTime();
+                latencies.record(TimeUnit.NANOSECONDS.toMicros(now - scheduledStart));
+                statusCounts.computeIfAbsent(result == null ? -1 : result.status(), key -> new LongAdder()).increment();
+                lastCompletion.accumulateAndGet(now - start, Math::max);
+                permits.release();
+            });
+        }
+        // Wait for all in-flight requests to complete.
+        permits.acquireUninterruptibly(concurrency);
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+        var result = new LoadResult(requestCount, Duration.ofNanos(lastCompletion.get()), counts, latencies);
+        LOG.info("Completed load run of [{}] requests in [{}] ms with [{}] errors", requestCount, result.elapsed().toMillis(), result.errors());
+        return result;
+    }
+
+    /**
+     * Get the concurrency to use when none is requested.
+     *
+     * @return The default concurrency.
+     */
+    public int getDefaultConcurrency() {
+        return defaultConcurrency;
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.test.sut;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The characteristics of a load run against SUT endpoints.
+ *
+ * @param endpoints The SUT endpoints to call (used in rotation).
+ * @param payloads The purchase order variants to send (used in rotation).
+ * @param rate The target number of requests to start per second.
+ * @param duration The duration over which requests are started.
+ * @param concurrency The maximum number of requests in flight.
+ */
+public record LoadProfile(List<String> endpoints, List<OrderPayload> payloads, double rate, Duration duration, int concurrency) {
+
+    /**
+     * Calculate the number of requests that this profile will start.
+     *
+     * @return The request count.
+     */
+    public long requestCount() {
+        return (long) Math.floor(rate * duration.toNanos() / 1_000_000_000.0);
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.test.sut;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * The measurements of a completed load run.
+ *
+ * @param requests The number of requests that were started.
+ * @param elapsed The time between the start of the run and the completion of its last request.
+ * @param statusCounts The number of responses per HTTP status code (requests that received no response are counted
+ *                     under status -1).
+ * @param latencies The latencies of all requests, measured from each request's scheduled start time.
+ */
+public record LoadResult(long requests, Duration elapsed, Map<Integer, Long> statusCounts, LatencyHistogram latencies) {
+
+    /**
+     * Calculate the number of failed requests (requests without a response or with a non-2xx status).
+     *
+     * @return The error count.
+     */
+    public long errors() {
+        return statusCounts.entrySet().stream()
+                .filter(entry -> entry.getKey() < 200 || entry.getKey() >= 300)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+    }
+
+    /**
+     * Calculate the achieved throughput.
+     *
+     * @return The completed requests per second.
+     */
+    public double throughput() {
+        double seconds = elapsed.toNanos() / 1_000_000_000.0;
+        return seconds > 0 ? requests / seconds : 0;
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.test.sut;
+
+import java.net.http.HttpRequest;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The purchase order content to send to a SUT.
+ */
+public interface OrderPayload {
+
+    /**
+     * Create a payload for an already available purchase order.
+     *
+     * @param purchaseOrder The purchase order.
+     * @return The payload.
+     */
+    static OrderPayload of(String purchaseOrder) {
+        return new TextPayload(purchaseOrder);
+    }
+
+    /**
+     * Create the publisher that produces the HTTP request body.
+     * <p/>
+     * A new publisher is created for each request so that payloads can be sent multiple times.
+     *
+     * @return The body publisher.
+     */
+    HttpRequest.BodyPublisher bodyPublisher();
+
+    /**
+     * Get the purchase order as text, if it is available without rendering it.
+     *
+     * @return The purchase order.
+     */
+    Optional<String> text();
+
+    /**
+     * Get the parameters from which the purchase order is generated.
+     *
+     * @return The parameters (empty if the order was not generated).
+     */
+    Map<String, Object> parameters();
+
+    /**
+     * Payload for a purchase order provided as text.
+     *
+     * @param purchaseOrder The purchase order.
+     */
+    record TextPayload(String purchaseOrder) implements OrderPayload {
+
+        @Override
+        public HttpRequest.BodyPublisher bodyPublisher() {
+            return HttpRequest.BodyPublishers.ofString(purchaseOrder);
+        }
+
+        @Override
+        public Optional<String> text() {
+            return Optional.of(purchaseOrder);
+        }
+
+        @Override
+        public Map<String, Object> parameters() {
+            return Map.of();
+        }
+
+    }
+
+}
@@ -0,0 +1,308 @@
+package org.test.sut;
+
+import freemarker.core.TemplateClassResolver;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Component used to generate purchase orders from FreeMarker templates.
+ * <p/>
+ * Compiled templates are cached by the hash of their content, so that a template sent repeatedly by the test bed is
+ * only parsed once. Orders are rendered while they are being sent, streaming the output directly into the request
+ * body without holding the full order in memory.
+ * <p/>
+ * Templates are provided by callers of the messaging service, so they are processed with a restricted configuration:
+ * Java classes cannot be instantiated (the "new" built-in) and the "api" built-in is disabled. Each payload is rendered
+ * once when it is created (discarding the output) so that invalid templates and missing parameters are reported as
+ * invalid inputs rather than as partially sent orders. Rendering happens on a bounded pool of threads and is abandoned
+ * if the request body is not consumed within the request deadline.
+ */
+@Component
+public class OrderTemplates {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(OrderTemplates.class);
+    /** The size of the chunks in which rendered output is passed to the HTTP client. */
+    private static final int CHUNK_SIZE = 8192;
+
+    /** The FreeMarker configuration shared by all templates. */
+    private final Configuration configuration = new Configuration(Configuration.VERSION_2_3_32);
+    /** Executor on which templates are rendered. */
+    private final ExecutorService renderExecutor;
+    /** The time in milliseconds a rendering waits for its output to be consumed before being abandoned. */
+    private final long stallTimeout;
+    /** The cache of compiled templates (least recently used entries are evicted first). */
+    private final Map<String, Template> cache;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheSize The maximum number of compiled templates to keep.
+     * @param renderThreads The maximum number of templates rendered concurrently.
+     * @param stallTimeout The time in milliseconds a rendering waits for its output to be consumed.
+     */
+    public OrderTemplates(@Value("${sut.template.cacheSize:64}") int cacheSize,
+                          @Value("${sut.template.renderThreads:32}") int renderThreads,
+                          @Value("${sut.request.deadline:60000}") long stallTimeout) {
+        if (renderThreads < 1) {
+            throw new IllegalArgumentException(String.format("The number of template rendering threads must be positive [%s].", renderThreads));
+        }
+        configuration.setDefaultEncoding(StandardCharsets.UTF_8.name());
+        configuration.setNewBuiltinClassResolver(TemplateClassResolver.ALLOWS_NOTHING_RESOLVER);
+        configuration.setAPIBuiltinEnabled(false);
+        configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        configuration.setLogTemplateExceptions(false);
+        this.renderExecutor = Executors.newFixedThreadPool(renderThreads, new RenderThreadFactory());
+        this.stallTimeout = stallTimeout;
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Create a payload that renders the given template with the given parameters.
+     *
+     * @param templateContent The FreeMarker template.
+     * @param parameters The parameters to render the template with.
+     * @return The payload.
+     * @throws IllegalArgumentException If the template cannot be parsed or rendered with the parameters.
+     */
+    public OrderPayload payloadFor(String templateContent, Map<String, Object> parameters) {
+        Template template = compile(templateContent);
+        try {
+            template.process(parameters, Writer.nullWriter());
+        } catch (TemplateException | IOException e) {
+            throw new IllegalArgumentException(String.format("The provided purchase order template could not be rendered [%s].", e.getMessage()), e);
+        }
+        return new TemplatePayload(template, parameters, renderExecutor, stallTimeout);
+    }
+
+    /**
+     * Get the compiled template for the given content, compiling and caching it if needed.
+     *
+     * @param templateContent The template's content.
+     * @return The compiled template.
+     */
+    private Template compile(String templateContent) {
+        String hash = hash(templateContent);
+        Template template = cache.get(hash);
+        if (template == null) {
+            try {
+                template = new Template(hash, new StringReader(templateContent), configuration);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("The provided purchase order template could not be parsed.", e);
+            }
+            LOG.info("Compiled purchase order template [{}]", hash);
+            cache.put(hash, template);
+        }
+        return template;
+    }
+
+    /**
+     * Calculate the hash of a template's content.
+     *
+     * @param templateContent The content.
+     * @return The hex-encoded SHA-256 hash.
+     */
+    private String hash(String templateContent) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(templateContent.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stop the rendering threads on shutdown.
+     */
+    @PreDestroy
+    public void destroy() {
+        renderExecutor.shutdownNow();
+    }
+
+    /**
+     * Payload for a purchase order rendered from a template.
+     *
+     * @param template The compiled template.
+     * @param parameters The parameters to render the template with.
+     * @param renderExecutor The executor on which to render the template.
+     * @param stallTimeout The time in milliseconds the rendering waits for its output to be consumed.
+     */
+    private record TemplatePayload(Template template, Map<String, Object> parameters, ExecutorService renderExecutor, long stallTimeout) implements OrderPayload {
+
+        @Override
+        public HttpRequest.BodyPublisher bodyPublisher() {
+            return HttpRequest.BodyPublishers.fromPublisher(new RenderingPublisher(this));
+        }
+
+        @Override
+        public Optional<String> text() {
+            return Optional.empty();
+        }
+
+    }
+
+    /**
+     * Publisher that renders a template for each subscriber, passing the output in chunks as it is produced.
+     * <p/>
+     * Rendering blocks when the subscriber does not keep up, so that at most a few chunks are buffered at any time.
+     * Chunks are delivered on the common pool, so that rendering threads waiting for the subscriber never prevent the
+     * delivery of their own chunks.
+     */
+    private static class RenderingPublisher implements Flow.Publisher<ByteBuffer> {
+
+        private final TemplatePayload payload;
+
+        /**
+         * Constructor.
+         *
+         * @param payload The payload to render.
+         */
+        RenderingPublisher(TemplatePayload payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            var publisher = new SubmissionPublisher<ByteBuffer>(ForkJoinPool.commonPool(), 4);
+            publisher.subscribe(subscriber);
+            payload.renderExecutor().execute(() -> {
+                try (Writer writer = new OutputStreamWriter(new ChunkingOutputStream(publisher, payload.stallTimeout()), StandardCharsets.UTF_8)) {
+                    payload.template().process(payload.parameters(), writer);
+                } catch (Exception e) {
+                    if (publisher.hasSubscribers()) {
+                        LOG.warn("Error while rendering purchase order template [{}]", payload.template().getName(), e);
+                    } else {
+                        LOG.debug("Stopped rendering purchase order template [{}] as its request was cancelled", payload.template().getName());
+                    }
+                    publisher.closeExceptionally(e);
+                    return;
+                }
+                publisher.close();
+            });
+        }
+
+    }
+
+    /**
+     * Output stream that submits its content to a publisher in fixed-size chunks.
+     * <p/>
+     * Writing fails once the publisher's subscriber cancelled its subscription, or did not accept a chunk within the
+     * stall timeout.
+     */
+    private static class ChunkingOutputStream extends OutputStream {
+
+        private final SubmissionPublisher<ByteBuffer> publisher;
+        private final long stallTimeout;
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param publisher The publisher to submit chunks to.
+         * @param stallTimeout The time in milliseconds to wait for the subscriber to accept a chunk.
+         */
+        ChunkingOutputStream(SubmissionPublisher<ByteBuffer> publisher, long stallTimeout) {
+            this.publisher = publisher;
+            this.stallTimeout = stallTimeout;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                submit();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    submit();
+                }
+                int length = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, length);
+                count += length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (count > 0) {
+                submit();
+            }
+        }
+
+        /**
+         * Submit the buffered content as a chunk and start a new buffer.
+         *
+         * @throws IOException If the chunk could not be passed to the subscriber.
+         */
+        private void submit() throws IOException {
+            if (!publisher.hasSubscribers()) {
+                throw new IOException("The request body is no longer consumed.");
+            }
+            if (publisher.offer(ByteBuffer.wrap(buffer, 0, count), stallTimeout, TimeUnit.MILLISECONDS, (subscriber, chunk) -> false) < 0) {
+                throw new IOException(String.format("The request body was not consumed within [%s] ms.", stallTimeout));
+            }
+            buffer = new byte[CHUNK_SIZE];
+            count = 0;
+        }
+
+    }
+
+    /**
+     * Factory for the daemon threads used for rendering.
+     */
+    private static class RenderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, "po-render-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
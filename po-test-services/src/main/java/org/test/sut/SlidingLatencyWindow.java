@@ -0,0 +1,117 @@
+package org.test.sut;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of the latencies recorded over a sliding time window.
+ * <p/>
+ * The window is split in a fixed number of slices, each holding its own LatencyHistogram. A slice is reused (after
+ * being cleared) once the window has moved past it, so the window advances in steps of one slice and uses a fixed
+ * amount of memory (set by the layout of the slices' histograms). Recording is lock-free. Values recorded while a slice
+ * is being cleared may be lost, which is acceptable for the statistics derived from the window.
+ */
+public class SlidingLatencyWindow {
+
+    private final LatencyHistogram[] slices;
+    /** The index of the time slice (now divided by the slice duration) held by each slice. */
+    private final AtomicLongArray sliceEpochs;
+    private final long sliceNanos;
+    private final int precisionBits;
+    private final long highestTrackableValue;
+    /** The time at which a latency was last recorded (as per System.nanoTime). */
+    private volatile long lastRecorded;
+
+    /**
+     * Constructor.
+     *
+     * @param window The duration of the window.
+     * @param sliceCount The number of slices the window is split in.
+     * @param precisionBits The precision of the slices' histograms (see LatencyHistogram).
+     * @param highestTrackableValue The highest value tracked by the slices' histograms.
+     * @param now The current time (as per System.nanoTime).
+     */
+    public SlidingLatencyWindow(Duration window, int sliceCount, int precisionBits, long highestTrackableValue, long now) {
+        if (window.isNegative() || window.isZero() || sliceCount < 1) {
+            throw new IllegalArgumentException("Latency windows require a positive duration and at least 1 slice.");
+        }
+        this.slices = new LatencyHistogram[sliceCount];
+        this.sliceEpochs = new AtomicLongArray(sliceCount);
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new LatencyHistogram(precisionBits, highestTrackableValue);
+            sliceEpochs.set(i, Long.MIN_VALUE);
+        }
+        this.sliceNanos = Math.max(1, window.toNanos() / sliceCount);
+        this.precisionBits = precisionBits;
+        this.highestTrackableValue = highestTrackableValue;
+        this.lastRecorded = now;
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param latency The latency (in the unit of the slices' histograms).
+     * @param now The current time (as per System.nanoTime).
+     */
+    public void record(long latency, long now) {
+        long epoch = sliceOf(now);
+        int index = Math.floorMod(epoch, slices.length);
+        long sliceEpoch = sliceEpochs.get(index);
+        if (sliceEpoch != epoch && sliceEpochs.compareAndSet(index, sliceEpoch, epoch)) {
+            slices[index].reset();
+        }
+        slices[index].record(latency);
+        lastRecorded = now;
+    }
+
+    /**
+     * Get the time slice a given time falls in.
+     * <p/>
+     * The window's contents only change (apart from new recordings) when the time slice changes, so statistics derived
+     * from a snapshot can be reused until then.
+     *
+     * @param now The time (as per System.nanoTime).
+     * @return The index of the time slice.
+     */
+    public long sliceOf(long now) {
+        return Math.floorDiv(now, sliceNanos);
+    }
+
+    /**
+     * Check whether the window is empty, i.e. whether no latency was recorded within its duration.
+     *
+     * @param now The current time (as per System.nanoTime).
+     * @return The check result.
+     */
+    public boolean isIdle(long now) {
+        return now - getIdleAt() >= 0;
+    }
+
+    /**
+     * Get the time at which the window becomes empty if no more latencies are recorded.
+     *
+     * @return The time (as per System.nanoTime).
+     */
+    public long getIdleAt() {
+        return lastRecorded + sliceNanos * slices.length;
+    }
+
+    /**
+     * Merge the latencies currently within the window.
+     *
+     * @param now The current time (as per System.nanoTime).
+     * @return A new histogram holding the window's latencies.
+     */
+    public LatencyHistogram snapshot(long now) {
+        long epoch = sliceOf(now);
+        var histogram = new LatencyHistogram(precisionBits, highestTrackableValue);
+        for (int i = 0; i < slices.length; i++) {
+            long sliceEpoch = sliceEpochs.get(i);
+            if (sliceEpoch > epoch - slices.length && sliceEpoch <= epoch) {
+                histogram.add(slices[i]);
+            }
+        }
+        return histogram;
+    }
+
+}
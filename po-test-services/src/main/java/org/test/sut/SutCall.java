@@ -0,0 +1,12 @@
+package org.test.sut;
+
+/**
+ * A single call to be made to a SUT.
+ *
+ * @param index The position of the call within its batch.
+ * @param sessionId The test session the call is made for (null if not linked to a session).
+ * @param endpoint The SUT endpoint to call.
+ * @param payload The purchase order to send.
+ */
+public record SutCall(int index, String sessionId, String endpoint, OrderPayload payload) {
+}
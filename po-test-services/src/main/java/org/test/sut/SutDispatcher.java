@@ -0,0 +1,294 @@
+package org.test.sut;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Component used to send purchase orders to SUT endpoints.
+ * <p/>
+ * All calls share a single HTTP client so that connections to SUTs are reused across calls. Batches of calls are
+ * dispatched concurrently, limiting the number of in-flight requests to the requested parallelism.
+ * <p/>
+ * Calls of batches are scheduled through the {@link EndpointScheduler}, limiting the in-flight requests per SUT host
+ * across all test sessions. Calls made directly via {@link #sendAsync(SutCall, boolean)} (as done for load runs) are
+ * not scheduled.
+ * <p/>
+ * Each call is bounded in time by its deadline (covering the complete exchange) and in memory by the response capture
+ * limit (see {@link BoundedBodyHandler}). Calls of batches are given deadlines adapted to their endpoint's observed
+ * latencies and can be hedged (see {@link AdaptiveDeadlines}), whereas other calls are given the fixed request
+ * deadline. Latencies are only tracked when adaptive deadlines are enabled or calls are hedged.
+ */
+@Component
+public class SutDispatcher {
+
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(SutDispatcher.class);
+    /** The header identifying the requests of a hedged call as a single order (as accepted by the purchase order API). */
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    @Autowired
+    private EndpointScheduler endpointScheduler = null;
+    @Autowired
+    private AdaptiveDeadlines adaptiveDeadlines = null;
+
+    @Value("${sut.send.parallelism:4}")
+    private int defaultParallelism;
+
+    @Value("${sut.send.maxParallelism:32}")
+    private int maxParallelism;
+
+    @Value("${sut.response.captureLimit:1048576}")
+    private int captureLimit;
+
+    @Value("${sut.response.digest:}")
+    private String digestAlgorithm;
+
+    @Value("${sut.request.deadline:60000}")
+    private long deadline;
+
+    /** The HTTP client shared by all calls. */
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.ALWAYS)
+            .build();
+
+    /**
+     * Make a single call to a SUT.
+     *
+     * @param call The call to make.
+     * @param hedge Whether the call may be duplicated if it is slow (only for idempotent calls).
+     * @return The call's result.
+     */
+    public SutResult dispatch(SutCall call, boolean hedge) {
+        return dispatch(List.of(call), 1, hedge).get(0);
+    }
+
+    /**
+     * Make a batch of calls to SUTs.
+     * <p/>
+     * Calls are made concurrently with at most the given number of requests in flight. Failures of individual calls
+     * are recorded in their results and do not affect other calls of the batch.
+     *
+     * @param calls The calls to make.
+     * @param parallelism The maximum number of concurrent requests (values outside the configured bounds are adapted).
+     * @param hedge Whether calls may be duplicated if they are slow (only for idempotent calls).
+     * @return The results, in the order of the provided calls.
+     */
+    public List<SutResult> dispatch(List<SutCall> calls, int parallelism, boolean hedge) {
+        var permits = new Semaphore(Math.max(1, Math.min(parallelism, maxParallelism)));
+        List<CompletableFuture<SutResult>> futures = new ArrayList<>(calls.size());
+        for (var call: calls) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.add(CompletableFuture.completedFuture(SutResult.failed(call, e)));
+                continue;
+            }
+            futures.add(endpointScheduler.submit(call.endpoint(), call.sessionId(), queueWait -> sendTracked(call, hedge).thenApply(result -> result.withQueueWait(queueWait)))
+                    .whenComplete((result, error) -> permits.release()));
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * Send a single call asynchronously with the fixed request deadline.
+     * <p/>
+     * Such calls (as made for load runs) are not hedged and their latencies are not tracked.
+     *
+     * @param call The call to make.
+     * @param capturePayload Whether the response body should be captured and returned (otherwise it is discarded).
+     * @return The future result (never completing exceptionally).
+     */
+    public CompletableFuture<SutResult> sendAsync(SutCall call, boolean capturePayload) {
+        return send(call, capturePayload, Duration.ofMillis(deadline), null).result();
+    }
+
+    /**
+     * Send a single call asynchronously with its endpoint's adaptive deadline, tracking its latency.
+     * <p/>
+     * A hedged call is duplicated if no response was received once the endpoint's usual latency has elapsed (see
+     * AdaptiveDeadlines). The duplicate request is scheduled like any other call to the endpoint's host, carries the
+     * same idempotency key as the first request (so that the SUT can recognise it as the same order) and is given the
+     * remainder of the call's time, so that the call's deadline is unchanged. The first response received completes
+     * the call and the other request is cancelled. If the duplicate completes the call, the first request's elapsed time
+     * is recorded as its latency (a lower bound of it), so that the slow responses that caused the hedge still weigh on
+     * the endpoint's latencies.
+     *
+     * @param call The call to make.
+     * @param hedge Whether the call may be duplicated.
+     * @return The future result (never completing exceptionally).
+     */
+    private CompletableFuture<SutResult> sendTracked(SutCall call, boolean hedge) {
+        long start = System.nanoTime();
+        Duration timeout = adaptiveDeadlines.timeoutFor(call.endpoint());
+        Duration hedgeDelay = hedge ? adaptiveDeadlines.hedgeDelayFor(call.endpoint()) : null;
+        String idempotencyKey = hedge ? UUID.randomUUID().toString() : null;
+        Attempt first = send(call, true, timeout, idempotencyKey);
+        if (hedge || adaptiveDeadlines.isAdaptive()) {
+            first.result().thenAccept(this::recordLatency);
+        }
+        if (hedgeDelay == null || hedgeDelay.compareTo(timeout) >= 0) {
+            return first.result();
+        }
+        var outcome = new CompletableFuture<SutResult>();
+        // The number of requests that have not failed yet (zero once all failed, at which point no hedge is made).
+        var pending = new AtomicInteger(1);
+        var failure = new AtomicReference<SutResult>();
+        var second = new AtomicReference<Attempt>();
+        Consumer<SutResult> onAttempt = result -> {
+            if (!result.isDelivered()) {
+                failure.compareAndSet(null, result);
+            }
+            if (result.isDelivered() || pending.decrementAndGet() == 0) {
+                outcome.complete(result.isDelivered() ? result : failure.get());
+            }
+        };
+        first.result().thenAccept(onAttempt);
+        CompletableFuture.delayedExecutor(hedgeDelay.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (outcome.isDone() || pending.updateAndGet(count -> count == 0 ? 0 : count + 1) <= 1) {
+                return;
+            }
+            endpointScheduler.submit(call.endpoint(), call.sessionId(), queueWait -> {
+                Duration remaining = timeout.minusNanos(System.nanoTime() - start);
+                if (outcome.isDone() || remaining.isNegative() || remaining.isZero()) {
+                    // The call completed (or ran out of time) while the duplicate was waiting for its host.
+                    if (pending.decrementAndGet() == 0) {
+                        outcome.complete(failure.get());
+                    }
+                    return CompletableFuture.completedFuture(null);
+                }
+                LOG.debug("Hedging call to SUT at [{}] after [{}] ms", call.endpoint(), hedgeDelay.toMillis());
+                Attempt attempt = send(call, true, remaining, idempotencyKey);
+                second.set(attempt);
+                if (outcome.isDone()) {
+                    attempt.cancel();
+                }
+                attempt.result().thenAccept(this::recordLatency);
+                attempt.result().thenAccept(onAttempt);
+                return attempt.result();
+            });
+        });
+        return outcome.thenApply(result -> {
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            if (!first.result().isDone()) {
+                // The duplicate completed the call while the first request was still pending.
+                adaptiveDeadlines.record(call.endpoint(), elapsed);
+            }
+            // Abandon the request that did not complete the call.
+            first.cancel();
+            Attempt hedged = second.get();
+            if (hedged != null) {
+                hedged.cancel();
+            }
+            return result.withTimings(elapsed, timeout, hedged == null ? 1 : 2);
+        });
+    }
+
+    /**
+     * Send a single request for a call.
+     *
+     * @param call The call to make.
+     * @param capturePayload Whether the response body should be captured and returned (otherwise it is discarded).
+     * @param timeout The time allowed for the request, until its response is completely read.
+     * @param idempotencyKey The idempotency key to send with the request (null for none).
+     * @return The request.
+     */
+    private Attempt send(SutCall call, boolean capturePayload, Duration timeout, String idempotencyKey) {
+        long start = System.nanoTime();
+        long deadlineNanos = start + timeout.toNanos();
+        HttpRequest sutRequest;
+        try {
+            var builder = HttpRequest.newBuilder()
+                    .uri(URI.create(call.endpoint()))
+                    .timeout(timeout)
+                    .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_XML_VALUE);
+            if (idempotencyKey != null) {
+                builder.setHeader(IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+            }
+            sutRequest = builder.POST(call.payload().bodyPublisher()).build();
+        } catch (IllegalArgumentException e) {
+            return new Attempt(CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(SutResult.failed(call, e)));
+        }
+        var bodyHandler = capturePayload
+                ? new BoundedBodyHandler(captureLimit, digestAlgorithm.isBlank() ? null : digestAlgorithm, false, deadlineNanos)
+                : new BoundedBodyHandler(0, null, true, deadlineNanos);
+        var exchange = httpClient.sendAsync(sutRequest, bodyHandler);
+        var result = exchange.handle((response, error) -> {
+            Duration latency = Duration.ofNanos(System.nanoTime() - start);
+            if (error != null) {
+                Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                if (!(cause instanceof CancellationException)) {
+                    LOG.warn("Error while contacting SUT at [{}]", call.endpoint(), cause);
+                }
+                return new SutResult(call, -1, null, cause, Duration.ZERO, latency, timeout, 1);
+            }
+            return new SutResult(call, response.statusCode(), response.body(), null, Duration.ZERO, latency, timeout, 1);
+        });
+        return new Attempt(exchange, result);
+    }
+
+    /**
+     * Record the latency of a request in its endpoint's latencies.
+     * <p/>
+     * Timed out requests are recorded with the time they were allowed, so that deadlines grow for SUTs slowing down.
+     * Requests failing for other reasons (or cancelled) are not recorded.
+     *
+     * @param result The request's result.
+     */
+    private void recordLatency(SutResult result) {
+        if (result.isDelivered() || result.error() instanceof HttpTimeoutException || result.error() instanceof TimeoutException) {
+            adaptiveDeadlines.record(result.call().endpoint(), result.latency());
+        }
+    }
+
+    /**
+     * Get the parallelism to use for batches when none is requested.
+     *
+     * @return The default parallelism.
+     */
+    public int getDefaultParallelism() {
+        return defaultParallelism;
+    }
+
+    /**
+     * A request sent for a call.
+     *
+     * @param exchange The HTTP exchange (used to cancel the request).
+     * @param result The request's future result (never completing exceptionally).
+     */
+    private record Attempt(CompletableFuture<?> exchange, CompletableFuture<SutResult> result) {
+
+        /**
+         * Cancel the request if it has not completed yet.
+         */
+        void cancel() {
+            exchange.cancel(true);
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.test.sut;
+
+import java.time.Duration;
+
+/**
+ * The outcome of a call made to a SUT.
+ *
+ * @param call The call that was made.
+ * @param status The HTTP status code returned by the SUT (-1 if no response was received).
+ * @param body The captured response body returned by the SUT (null if no response was received).
+ * @param error The error that prevented the call from completing (null if a response was received).
+ * @param queueWait The time the call waited for its endpoint's capacity before being sent.
+ * @param latency The time from sending the call's first request to completing the call.
+ * @param timeout The time the call was allowed.
+ * @param attempts The number of requests made for the call (more than one if it was hedged).
+ */
+public record SutResult(SutCall call, int status, CapturedBody body, Throwable error, Duration queueWait, Duration latency, Duration timeout, int attempts) {
+
+    /**
+     * Create a result for a call that failed before any request was made.
+     *
+     * @param call The call.
+     * @param error The error.
+     * @return The result.
+     */
+    public static SutResult failed(SutCall call, Throwable error) {
+        return new SutResult(call, -1, null, error, Duration.ZERO, Duration.ZERO, Duration.ZERO, 0);
+    }
+
+    /**
+     * Create a copy of this result with the given queue wait time.
+     *
+     * @param queueWait The queue wait time.
+     * @return The new result.
+     */
+    public SutResult withQueueWait(Duration queueWait) {
+        return new SutResult(call, status, body, error, queueWait, latency, timeout, attempts);
+    }
+
+    /**
+     * Create a copy of this result with the given timings.
+     *
+     * @param latency The call's latency.
+     * @param timeout The time the call was allowed.
+     * @param attempts The number of requests made for the call.
+     * @return The new result.
+     */
+    public SutResult withTimings(Duration latency, Duration timeout, int attempts) {
+        return new SutResult(call, status, body, error, queueWait, latency, timeout, attempts);
+    }
+
+    /**
+     * Get the captured response body as text.
+     *
+     * @return The text (null if no response was received).
+     */
+    public String payload() {
+        return body == null ? null : body.text();
+    }
+
+    /**
+     * Check to see whether a response was received from the SUT.
+     *
+     * @return The check result.
+     */
+    public boolean isDelivered() {
+        return error == null;
+    }
+
+}
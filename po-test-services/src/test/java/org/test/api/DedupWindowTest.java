@@ -0,0 +1,82 @@
+package org.test.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the window of keys used to detect duplicate orders.
+ */
+public class DedupWindowTest {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    /**
+     * Test that a key recorded within the window is reported with its original entry, without generating an
+     * identifier.
+     */
+    @Test
+    public void duplicateWithinWindow() {
+        var window = new DedupWindow(1000, 10);
+        var recorded = window.putIfAbsent("key", id(1), "hash1", 0);
+        assertFalse(recorded.duplicate());
+        assertEquals(1, recorded.entry().id());
+        var duplicate = window.putIfAbsent("key", () -> fail("No identifier is needed for duplicates"), "hash2", WINDOW - 1);
+        assertTrue(duplicate.duplicate());
+        assertEquals(1, duplicate.entry().id());
+        assertEquals("hash1", duplicate.entry().contentHash());
+    }
+
+    /**
+     * Test that a key is forgotten once its window expired, and that duplicates do not extend the window.
+     */
+    @Test
+    public void expiry() {
+        var window = new DedupWindow(1000, 10);
+        assertFalse(window.putIfAbsent("key", id(1), "hash", 0).duplicate());
+        assertTrue(window.putIfAbsent("key", id(2), "hash", WINDOW / 2).duplicate());
+        assertFalse(window.putIfAbsent("key", id(3), "hash", WINDOW).duplicate());
+        assertEquals(3, window.putIfAbsent("key", id(4), "hash", WINDOW + 1).entry().id());
+    }
+
+    /**
+     * Test that the oldest keys are discarded beyond the maximum number of entries.
+     */
+    @Test
+    public void capacity() {
+        var window = new DedupWindow(1000, 2);
+        assertFalse(window.putIfAbsent("key1", id(1), "hash", 0).duplicate());
+        assertFalse(window.putIfAbsent("key2", id(2), "hash", 1).duplicate());
+        assertFalse(window.putIfAbsent("key3", id(3), "hash", 2).duplicate());
+        assertTrue(window.putIfAbsent("key3", id(4), "hash", 3).duplicate());
+        assertTrue(window.putIfAbsent("key2", id(4), "hash", 3).duplicate());
+        assertFalse(window.putIfAbsent("key1", id(4), "hash", 3).duplicate());
+    }
+
+    /**
+     * Test that a key is only removed for the identifier it was recorded with.
+     */
+    @Test
+    public void removeMatchingId() {
+        var window = new DedupWindow(1000, 10);
+        assertFalse(window.putIfAbsent("key", id(1), "hash", 0).duplicate());
+        window.remove("key", 2);
+        assertTrue(window.putIfAbsent("key", id(2), "hash", 1).duplicate());
+        window.remove("key", 1);
+        assertFalse(window.putIfAbsent("key", id(2), "hash", 2).duplicate());
+    }
+
+    /**
+     * Create a generator of a fixed identifier.
+     *
+     * @param id The identifier.
+     * @return The generator.
+     */
+    private LongSupplier id(long id) {
+        return () -> id;
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.test.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.test.metrics.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the detection of resubmitted orders.
+ */
+public class OrderDeduplicatorTest {
+
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Test that a retried order is answered with the original identifier, and that reusing its idempotency key with
+     * different content is reported as a conflict (answered with a 422 status).
+     */
+    @Test
+    public void duplicatesAndConflicts() {
+        var metrics = new Metrics();
+        var deduplicator = createDeduplicator(metrics);
+        assertEquals(new OrderDeduplicator.Registration(1, false, false), deduplicator.register("BE123", "key", "order", ids::incrementAndGet));
+        assertEquals(new OrderDeduplicator.Registration(1, true, false), deduplicator.register("be123", "key", "order", ids::incrementAndGet));
+        assertEquals(new OrderDeduplicator.Registration(1, true, true), deduplicator.register("BE123", "key", "other order", ids::incrementAndGet));
+        assertEquals(new OrderDeduplicator.Registration(2, false, false), deduplicator.register("BE123", "other key", "order", ids::incrementAndGet));
+        assertEquals(1L, metrics.getCounters().get("receiveOrder.duplicate"));
+        assertEquals(1L, metrics.getCounters().get("receiveOrder.duplicate.conflicting"));
+    }
+
+    /**
+     * Test that the retry of an order that failed to be processed is processed.
+     */
+    @Test
+    public void unregisteredOrderIsProcessedAgain() {
+        var deduplicator = createDeduplicator(new Metrics());
+        long id = deduplicator.register("BE123", "key", "order", ids::incrementAndGet).id();
+        deduplicator.unregister("BE123", "key", "order", id);
+        var retry = deduplicator.register("BE123", "key", "order", ids::incrementAndGet);
+        assertFalse(retry.duplicate());
+        assertNotEquals(id, retry.id());
+    }
+
+    /**
+     * Test that orders without an idempotency key are not deduplicated unless content hashing is enabled.
+     */
+    @Test
+    public void ordersWithoutKey() {
+        var deduplicator = createDeduplicator(new Metrics());
+        assertFalse(deduplicator.register("BE123", null, "order", ids::incrementAndGet).duplicate());
+        assertFalse(deduplicator.register("BE123", null, "order", ids::incrementAndGet).duplicate());
+        ReflectionTestUtils.setField(deduplicator, "contentHash", true);
+        long id = deduplicator.register("BE123", null, "order", ids::incrementAndGet).id();
+        assertEquals(new OrderDeduplicator.Registration(id, true, false), deduplicator.register("BE123", null, "order", ids::incrementAndGet));
+    }
+
+    /**
+     * Create an enabled deduplicator.
+     *
+     * @param metrics The metrics to count duplicates in.
+     * @return The deduplicator.
+     */
+    private OrderDeduplicator createDeduplicator(Metrics metrics) {
+        var deduplicator = new OrderDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "window", 300000L);
+        ReflectionTestUtils.setField(deduplicator, "maxEntries", 100);
+        ReflectionTestUtils.setField(deduplicator, "metrics", metrics);
+        deduplicator.init();
+        return deduplicator;
+    }
+
+}
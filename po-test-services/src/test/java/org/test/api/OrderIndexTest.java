@@ -0,0 +1,98 @@
+package org.test.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the index of received orders.
+ */
+public class OrderIndexTest {
+
+    /**
+     * Test that recording an order beyond the index's size discards the oldest order.
+     */
+    @Test
+    public void oldestOrdersAreEvicted() {
+        var index = createIndex(3, 100);
+        for (long id = 1; id <= 5; id++) {
+            index.add(id, "REF-" + id, "BE123", "127.0.0.1", "order " + id);
+        }
+        assertNull(index.get(1));
+        assertNull(index.get(2));
+        for (long id = 3; id <= 5; id++) {
+            assertEquals("REF-" + id, index.get(id).reference());
+            assertEquals("order " + id, index.get(id).content());
+        }
+    }
+
+    /**
+     * Test that long contents are truncated while recording their full length.
+     */
+    @Test
+    public void longContentIsTruncated() {
+        var index = createIndex(3, 5);
+        index.add(1, "REF-1", "BE123", "127.0.0.1", "123456789");
+        assertEquals("12345", index.get(1).content());
+        assertEquals(9, index.get(1).contentLength());
+    }
+
+    /**
+     * Test that orders received once the total content limit is reached are indexed without their content, until
+     * older orders are discarded.
+     */
+    @Test
+    public void totalContentIsBounded() {
+        var index = createIndex(2, 100, 10);
+        index.add(1, "REF-1", "BE123", "127.0.0.1", "123456");
+        index.add(2, "REF-2", "BE123", "127.0.0.1", "123456");
+        assertEquals("123456", index.get(1).content());
+        assertEquals("REF-2", index.get(2).reference());
+        assertNull(index.get(2).content());
+        assertEquals(6, index.get(2).contentLength());
+        // Discarding the first order frees its content's share of the limit.
+        index.add(3, "REF-3", "BE123", "127.0.0.1", "123456");
+        assertNull(index.get(1));
+        assertEquals("123456", index.get(3).content());
+    }
+
+    /**
+     * Test that an index of size zero records nothing.
+     */
+    @Test
+    public void disabledIndex() {
+        var index = createIndex(0, 100);
+        index.add(1, "REF-1", "BE123", "127.0.0.1", "order");
+        assertNull(index.get(1));
+    }
+
+    /**
+     * Create an index.
+     *
+     * @param size The number of indexed orders.
+     * @param maxContentLength The maximum length of indexed contents.
+     * @return The index.
+     */
+    private OrderIndex createIndex(int size, int maxContentLength) {
+        return createIndex(size, maxContentLength, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create an index with a total content limit.
+     *
+     * @param size The number of indexed orders.
+     * @param maxContentLength The maximum length of indexed contents.
+     * @param maxTotalContentLength The maximum total length of indexed contents.
+     * @return The index.
+     */
+    private OrderIndex createIndex(int size, int maxContentLength, long maxTotalContentLength) {
+        var index = new OrderIndex();
+        ReflectionTestUtils.setField(index, "size", size);
+        ReflectionTestUtils.setField(index, "maxContentLength", maxContentLength);
+        ReflectionTestUtils.setField(index, "maxTotalContentLength", maxTotalContentLength);
+        index.init();
+        return index;
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.test.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.test.cluster.ClusterConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the generation of order references.
+ */
+public class ReferenceGeneratorTest {
+
+    /** The number of bits of an identifier below its timestamp. */
+    private static final int TIMESTAMP_SHIFT = 22;
+    private static final long MAX_SEQUENCE = 4095;
+
+    /**
+     * Test that identifiers are strictly increasing and carry the node number.
+     */
+    @Test
+    public void monotonicIdentifiers() {
+        var generator = createGenerator(true, 5);
+        long previous = generator.nextId();
+        for (int i = 0; i < 100000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous, "Identifier " + id + " follows " + previous);
+            assertEquals(5, generator.nodeNumberOf(id));
+            previous = id;
+        }
+    }
+
+    /**
+     * Test that exhausting a millisecond's sequence borrows the following millisecond rather than reusing identifiers,
+     * including when the clock is behind the last identifier.
+     */
+    @Test
+    public void sequenceOverflowBorrowsNextMillisecond() {
+        var generator = createGenerator(true, 5);
+        long future = generator.nextId() >>> TIMESTAMP_SHIFT;
+        // Simulate the last identifier of a millisecond ahead of the clock.
+        long last = (future + 60000) << TIMESTAMP_SHIFT | 5L << 12 | MAX_SEQUENCE;
+        ((AtomicLong) ReflectionTestUtils.getField(generator, "last")).set(last);
+        long id = generator.nextId();
+        assertEquals(future + 60001, id >>> TIMESTAMP_SHIFT);
+        assertEquals(0, id & MAX_SEQUENCE);
+        assertEquals(5, generator.nodeNumberOf(id));
+        assertEquals(id + 1, generator.nextId());
+    }
+
+    /**
+     * Test that references are parsed back to their identifiers, and that invalid references are detected.
+     */
+    @Test
+    public void referenceRoundTrip() {
+        var generator = createGenerator(false, -1);
+        long id = generator.nextId();
+        String reference = generator.toReference(id);
+        assertEquals(23, reference.length());
+        assertEquals(id, generator.toId(reference));
+        assertEquals(0, generator.nodeNumberOf(id));
+        assertEquals(-1, generator.toId("REF-abc"));
+        assertEquals(-1, generator.toId("REF-99999999999999999999"));
+        assertEquals(-1, generator.toId("ORD-1"));
+    }
+
+    /**
+     * Test that the cluster mode requires a valid node number.
+     */
+    @Test
+    public void clusterModeRequiresNodeNumber() {
+        assertThrows(IllegalStateException.class, () -> createGenerator(true, -1));
+        assertThrows(IllegalStateException.class, () -> createGenerator(true, ReferenceGenerator.MAX_NODES));
+        assertEquals(1023, createGenerator(true, 1023).getNodeNumber());
+    }
+
+    /**
+     * Create a generator.
+     *
+     * @param clusterEnabled Whether the cluster mode is enabled.
+     * @param nodeNumber The configured node number.
+     * @return The generator.
+     */
+    private ReferenceGenerator createGenerator(boolean clusterEnabled, int nodeNumber) {
+        var config = new ClusterConfig();
+        ReflectionTestUtils.setField(config, "enabled", clusterEnabled);
+        ReflectionTestUtils.setField(config, "nodeNumber", nodeNumber);
+        var generator = new ReferenceGenerator();
+        ReflectionTestUtils.setField(generator, "clusterConfig", config);
+        generator.init();
+        return generator;
+    }
+
+}
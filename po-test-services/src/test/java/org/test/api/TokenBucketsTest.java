@@ -0,0 +1,78 @@
+package org.test.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the token buckets used to rate limit SUT messages.
+ */
+public class TokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Test that a bucket allows its burst and then refills at its rate.
+     */
+    @Test
+    public void burstThenRate() {
+        var buckets = new TokenBuckets(1, 2, 10);
+        assertEquals(0, buckets.tryAcquire("a", 0));
+        assertEquals(0, buckets.tryAcquire("a", 0));
+        assertEquals(SECOND, buckets.tryAcquire("a", 0));
+        assertEquals(0, buckets.tryAcquire("a", SECOND));
+    }
+
+    /**
+     * Test that peeking does not take tokens and that released tokens can be taken again.
+     */
+    @Test
+    public void peekAndRelease() {
+        var buckets = new TokenBuckets(1, 1, 10);
+        assertEquals(0, buckets.peek("a", 0));
+        assertEquals(0, buckets.peek("a", 0));
+        assertEquals(0, buckets.tryAcquire("a", 0));
+        assertEquals(SECOND, buckets.peek("a", 0));
+        buckets.release("a");
+        assertEquals(0, buckets.peek("a", 0));
+        assertEquals(0, buckets.tryAcquire("a", 0));
+    }
+
+    /**
+     * Test that new keys replace idle buckets, and are refused until a bucket refills when none is idle.
+     */
+    @Test
+    public void trackedKeysAreBounded() {
+        var buckets = new TokenBuckets(1, 1, 2);
+        assertEquals(0, buckets.tryAcquire("a", 0));
+        assertEquals(0, buckets.tryAcquire("b", SECOND / 2));
+        // Neither bucket has refilled.
+        assertEquals(SECOND, buckets.tryAcquire("c", 0));
+        assertEquals(SECOND / 2, buckets.tryAcquire("c", SECOND / 2));
+        // The bucket of "a" refilled and is replaced.
+        assertEquals(0, buckets.tryAcquire("c", SECOND));
+        // The bucket of "b" was not discarded.
+        assertEquals(SECOND / 2, buckets.tryAcquire("b", SECOND));
+    }
+
+    /**
+     * Test that new keys are asked to retry shortly (rather than at the scan marker's time) while another thread scans
+     * for idle buckets.
+     */
+    @Test
+    public void newKeysRetryShortlyDuringScans() {
+        var buckets = new TokenBuckets(1, 1, 1);
+        assertEquals(0, buckets.tryAcquire("a", 0));
+        var nextEviction = (AtomicLong) ReflectionTestUtils.getField(buckets, "nextEviction");
+        nextEviction.set(Long.MAX_VALUE);
+        long wait = buckets.tryAcquire("b", 0);
+        assertTrue(wait > 0 && wait <= SECOND, "Unexpected wait " + wait);
+        wait = buckets.peek("b", 0);
+        assertTrue(wait > 0 && wait <= SECOND, "Unexpected wait " + wait);
+    }
+
+}
@@ -0,0 +1,248 @@
+package org.test.cluster;
+
+import com.gitb.core.LogLevel;
+import com.gitb.tr.TAR;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.test.gitb.StateManager;
+import org.test.gitb.TestBedNotifier;
+import org.test.gitb.Utils;
+import org.test.state.PendingReceiveStep;
+import org.test.state.StateSnapshot;
+import org.test.state.SutMessage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the routing of state between cluster members.
+ * <p/>
+ * The router runs as member "node1" with a real StateManager, while calls to other members are recorded instead of
+ * being made.
+ */
+public class ClusterRouterTest {
+
+    private static final String NODE1 = "node1=http://localhost:7000/po";
+    private static final String NODE2 = "node2=http://localhost:7001/po";
+    private static final String CALLBACK_URL = "http://localhost/callback";
+
+    /**
+     * Test that a joining member receives the sessions before the state it now owns, and steps before messages.
+     */
+    @Test
+    public void joiningMemberReceivesSessionsThenStepsThenMessages() {
+        var client = new RecordingClusterClient(false);
+        var stateManager = createStateManager();
+        var router = createRouter(NODE1, client, stateManager);
+        List<ClusterMember> members = ClusterConfig.parseMembers(NODE1 + "," + NODE2);
+        var ring = new HashRing(members, 128);
+        List<String> movedVatNumbers = vatNumbersOwnedBy(ring, "node2", 2);
+        router.createSession("session1", CALLBACK_URL);
+        router.handleReceiveStep(new PendingReceiveStep("session1", "call-1", CALLBACK_URL, movedVatNumbers.get(0)));
+        router.handleSutMessage(new SutMessage(movedVatNumbers.get(1), "order"));
+        assertTrue(client.calls.isEmpty());
+
+        router.updateMembers(members, false);
+
+        assertEquals(List.of("node2 GET /node", "node2 POST /sessions/batch", "node2 POST /receiveSteps", "node2 POST /sutMessages"), List.copyOf(client.calls));
+        StateSnapshot snapshot = stateManager.snapshot();
+        assertTrue(snapshot.sutMessages().isEmpty());
+        assertTrue(snapshot.sessions().get(0).pendingSteps().isEmpty());
+    }
+
+    /**
+     * Test that a member joining with the node number of another member is rejected.
+     */
+    @Test
+    public void joiningMemberWithUsedNodeNumberIsRejected() {
+        var client = new RecordingClusterClient(false);
+        client.nodeNumbers.put("node2", 1);
+        var router = createRouter(NODE1, client, createStateManager());
+        List<ClusterMember> members = ClusterConfig.parseMembers(NODE1 + "," + NODE2);
+
+        assertThrows(IllegalArgumentException.class, () -> router.updateMembers(members, false));
+
+        assertEquals(1, router.getMembers().size());
+        assertEquals(List.of("node2 GET /node"), List.copyOf(client.calls));
+    }
+
+    /**
+     * Test that members are found from their node numbers, which are only requested once from each member.
+     */
+    @Test
+    public void membersAreFoundByNodeNumber() {
+        var client = new RecordingClusterClient(false);
+        var router = createRouter(NODE1 + "," + NODE2, client, createStateManager());
+
+        assertEquals("node1", router.getMemberByNodeNumber(1).id());
+        assertEquals("node2", router.getMemberByNodeNumber(2).id());
+        assertNull(router.getMemberByNodeNumber(3));
+        assertEquals(List.of("node2 GET /node"), List.copyOf(client.calls));
+    }
+
+    /**
+     * Test that a message whose owner cannot be reached fails rather than being handled by another member.
+     */
+    @Test
+    public void unreachableOwnerIsNotReplacedLocally() {
+        var client = new RecordingClusterClient(true);
+        var stateManager = createStateManager();
+        var router = createRouter(NODE1 + "," + NODE2, client, stateManager);
+        String vatNumber = vatNumbersOwnedBy(new HashRing(ClusterConfig.parseMembers(NODE1 + "," + NODE2), 128), "node2", 1).get(0);
+        stateManager.createSession("session1", CALLBACK_URL);
+
+        assertThrows(IllegalStateException.class, () -> router.handleSutMessage(new SutMessage(vatNumber, "order")));
+
+        // The call was retried once, and nothing was parked locally.
+        assertEquals(List.of("node2 POST /sutMessages", "node2 POST /sutMessages"), List.copyOf(client.calls));
+        assertTrue(stateManager.snapshot().sutMessages().isEmpty());
+    }
+
+    /**
+     * Test that creating a session fails, and leaves no session behind, when a member does not acknowledge it.
+     */
+    @Test
+    public void unacknowledgedSessionIsNotCreated() {
+        var client = new RecordingClusterClient(true);
+        var stateManager = createStateManager();
+        var router = createRouter(NODE1 + "," + NODE2, client, stateManager);
+
+        assertThrows(IllegalStateException.class, () -> router.createSession("session1", CALLBACK_URL));
+
+        // The creation was retried once before the session was destroyed again.
+        assertEquals(List.of("node2 POST /sessions", "node2 POST /sessions", "node2 DELETE /sessions/session1"), List.copyOf(client.calls));
+        assertTrue(stateManager.snapshot().sessions().isEmpty());
+    }
+
+    /**
+     * Test that the cluster mode cannot be enabled without a shared secret.
+     */
+    @Test
+    public void clusterModeRequiresSecret() {
+        var config = createConfig(NODE1);
+        ReflectionTestUtils.setField(config, "secret", "");
+        var router = new ClusterRouter();
+        ReflectionTestUtils.setField(router, "config", config);
+        assertThrows(IllegalStateException.class, router::init);
+    }
+
+    /**
+     * Create a router running as "node1".
+     *
+     * @param members The initial members.
+     * @param client The client to record calls with.
+     * @param stateManager The local state.
+     * @return The router.
+     */
+    private ClusterRouter createRouter(String members, ClusterClient client, StateManager stateManager) {
+        var router = new ClusterRouter();
+        ReflectionTestUtils.setField(router, "config", createConfig(members));
+        ReflectionTestUtils.setField(router, "clusterClient", client);
+        ReflectionTestUtils.setField(router, "stateManager", stateManager);
+        router.init();
+        return router;
+    }
+
+    /**
+     * Create the configuration of "node1".
+     *
+     * @param members The static members.
+     * @return The configuration.
+     */
+    private ClusterConfig createConfig(String members) {
+        var config = new ClusterConfig();
+        ReflectionTestUtils.setField(config, "enabled", true);
+        ReflectionTestUtils.setField(config, "nodeId", "node1");
+        ReflectionTestUtils.setField(config, "nodeNumber", 1);
+        ReflectionTestUtils.setField(config, "members", members);
+        ReflectionTestUtils.setField(config, "virtualNodes", 128);
+        ReflectionTestUtils.setField(config, "secret", "secret");
+        return config;
+    }
+
+    /**
+     * Create a StateManager that does not notify the Test Bed.
+     *
+     * @return The StateManager.
+     */
+    private StateManager createStateManager() {
+        var stateManager = new StateManager();
+        ReflectionTestUtils.setField(stateManager, "testBedNotifier", new SilentNotifier());
+        ReflectionTestUtils.setField(stateManager, "utils", new Utils());
+        return stateManager;
+    }
+
+    /**
+     * Find VAT numbers owned by a member.
+     *
+     * @param ring The ring.
+     * @param memberId The member's ID.
+     * @param count The number of VAT numbers to find.
+     * @return The VAT numbers.
+     */
+    private List<String> vatNumbersOwnedBy(HashRing ring, String memberId, int count) {
+        return IntStream.range(0, 10000)
+                .mapToObj(i -> "BE" + i)
+                .filter(vatNumber -> ring.ownerOf(vatNumber).id().equals(memberId))
+                .limit(count)
+                .toList();
+    }
+
+    /**
+     * ClusterClient recording calls instead of making them.
+     * <p/>
+     * Members report the node number following their ID (e.g. 2 for "node2") unless configured otherwise.
+     */
+    private static class RecordingClusterClient extends ClusterClient {
+
+        private final ConcurrentLinkedQueue<String> calls = new ConcurrentLinkedQueue<>();
+        private final Map<String, Integer> nodeNumbers = new HashMap<>();
+        private final boolean fail;
+
+        /**
+         * Constructor.
+         *
+         * @param fail Whether all calls fail.
+         */
+        RecordingClusterClient(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public <T> CompletableFuture<T> callAsync(ClusterMember member, String method, String path, Object body, Class<T> responseType) {
+            calls.add(member.id() + " " + method + " " + path);
+            if (fail) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Unreachable"));
+            } else if (path.equals("/node")) {
+                int nodeNumber = nodeNumbers.getOrDefault(member.id(), Integer.parseInt(member.id().substring("node".length())));
+                return CompletableFuture.completedFuture(responseType.cast(new ClusterRouter.NodeInfo(member.id(), nodeNumber)));
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+    }
+
+    /**
+     * TestBedNotifier ignoring all notifications.
+     */
+    private static class SilentNotifier extends TestBedNotifier {
+
+        @Override
+        public CompletableFuture<Void> notifyTestBed(String sessionId, String callId, String callback, TAR report) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> sendLogMessage(String sessionId, String callbackAddress, String message, LogLevel level) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.test.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the assignment of VAT numbers to cluster members.
+ */
+public class HashRingTest {
+
+    private static final ClusterMember NODE1 = new ClusterMember("node1", "http://localhost:7000/po");
+    private static final ClusterMember NODE2 = new ClusterMember("node2", "http://localhost:7001/po");
+    private static final ClusterMember NODE3 = new ClusterMember("node3", "http://localhost:7002/po");
+    private static final int VAT_NUMBERS = 10000;
+
+    /**
+     * Test that ownership only depends on the members and ignores the VAT number's case.
+     */
+    @Test
+    public void ownershipIsDeterministicAndCaseInsensitive() {
+        var ring = new HashRing(List.of(NODE1, NODE2, NODE3), 128);
+        var sameRing = new HashRing(List.of(NODE3, NODE1, NODE2), 128);
+        for (int i = 0; i < VAT_NUMBERS; i++) {
+            String vatNumber = "be" + i;
+            assertEquals(ring.ownerOf(vatNumber), sameRing.ownerOf(vatNumber));
+            assertEquals(ring.ownerOf(vatNumber), ring.ownerOf(vatNumber.toUpperCase()));
+        }
+    }
+
+    /**
+     * Test that VAT numbers are spread across all members.
+     */
+    @Test
+    public void vatNumbersAreSpreadAcrossMembers() {
+        var ring = new HashRing(List.of(NODE1, NODE2, NODE3), 128);
+        Map<ClusterMember, Integer> counts = new HashMap<>();
+        for (int i = 0; i < VAT_NUMBERS; i++) {
+            counts.merge(ring.ownerOf("BE" + i), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        // Each member owns roughly a third of the VAT numbers.
+        counts.values().forEach(count -> assertTrue(count > VAT_NUMBERS / 5, "Unbalanced ring " + counts));
+    }
+
+    /**
+     * Test that a joining member only takes over VAT numbers, without moving others between existing members.
+     */
+    @Test
+    public void joiningMemberOnlyTakesOverVatNumbers() {
+        var before = new HashRing(List.of(NODE1, NODE2), 128);
+        var after = new HashRing(List.of(NODE1, NODE2, NODE3), 128);
+        int moved = 0;
+        for (int i = 0; i < VAT_NUMBERS; i++) {
+            ClusterMember previousOwner = before.ownerOf("BE" + i);
+            ClusterMember newOwner = after.ownerOf("BE" + i);
+            if (!previousOwner.equals(newOwner)) {
+                assertEquals(NODE3, newOwner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < VAT_NUMBERS / 2, "Moved " + moved);
+    }
+
+    /**
+     * Test that a ring requires members.
+     */
+    @Test
+    public void ringRequiresMembers() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), 128));
+    }
+
+}
@@ -0,0 +1,369 @@
+package org.test.gitb;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.gitb.core.LogLevel;
+import com.gitb.tr.TAR;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.test.state.DeliveryMode;
+import org.test.state.PendingReceiveStep;
+import org.test.state.StateSnapshot;
+import org.test.state.SutMessage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency stress tests for the StateManager's matching of SUT messages and 'receive' steps.
+ * <p/>
+ * Each test races the StateManager's operations from several threads, released together through a barrier and
+ * repeated many times to cover different interleavings. The guarantees verified here are those provided today by the
+ * StateManager's single lock, and any change to its synchronisation must keep them:
+ * <ul>
+ *     <li>A SUT message and a 'receive' step for the same VAT number that race each other are matched exactly once.
+ *     They are never both parked and never both consumed.</li>
+ *     <li>Every SUT message received while sessions are active is either delivered to a step or parked, never
+ *     both, never lost and never delivered twice to the same session.</li>
+ *     <li>Every 'receive' step is completed at most once.</li>
+ *     <li>Once a session is destroyed it has no pending steps, and destroying the last session leaves no parked
+ *     messages.</li>
+ * </ul>
+ * The following are current behaviours rather than guarantees, documented by the tests so that changes to them are
+ * deliberate:
+ * <ul>
+ *     <li>A SUT message completes one pending step in each session expecting its VAT number, but is only parked if
+ *     no session was expecting it. A step arriving later in another session therefore does not receive it.</li>
+ *     <li>A step handled after its session was destroyed is not parked but can still consume a parked message.</li>
+ * </ul>
+ * A dedicated harness (e.g. jcstress) would explore interleavings more systematically, but it requires a separate
+ * build setup. These tests run as part of the normal build instead.
+ */
+public class StateManagerConcurrencyTest {
+
+    private static final int ITERATIONS = 2000;
+    private static final String CALLBACK_URL = "http://localhost/callback";
+
+    private static Level stateManagerLogLevel;
+
+    private ExecutorService executor;
+
+    @BeforeAll
+    public static void setUpLogging() {
+        // The StateManager logs each message and step, which is too verbose for these volumes.
+        var logger = (Logger) LoggerFactory.getLogger(StateManager.class);
+        stateManagerLogLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+    }
+
+    @AfterAll
+    public static void tearDownLogging() {
+        ((Logger) LoggerFactory.getLogger(StateManager.class)).setLevel(stateManagerLogLevel);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test that a message and a step for the same VAT number racing each other are matched exactly once.
+     */
+    @Test
+    public void messageAndStepAreMatchedExactlyOnce() throws Exception {
+        for (int i = 0; i < ITERATIONS; i++) {
+            var notifier = new RecordingNotifier();
+            var stateManager = createStateManager(notifier);
+            stateManager.createSession("session", CALLBACK_URL);
+            String content = "order-" + i;
+            String callId = "call-" + i;
+            race(
+                    () -> stateManager.handleSutMessage(new SutMessage("BE0001", content)),
+                    // VAT numbers are matched case-insensitively.
+                    () -> stateManager.handleReceiveStep(new PendingReceiveStep("session", callId, CALLBACK_URL, "be0001"))
+            );
+            assertEquals(List.of(new Notification("session", callId, content)), List.copyOf(notifier.notifications), "Iteration " + i);
+            StateSnapshot snapshot = stateManager.snapshot();
+            assertTrue(snapshot.sutMessages().isEmpty(), "Iteration " + i);
+            assertTrue(snapshot.sessions().get(0).pendingSteps().isEmpty(), "Iteration " + i);
+        }
+    }
+
+    /**
+     * Test that equal numbers of messages and steps sent concurrently for several VAT numbers all match exactly once.
+     */
+    @Test
+    public void concurrentMessagesAndStepsAreAllMatchedOnce() throws Exception {
+        int vatNumbers = 4;
+        int perVatNumber = 500;
+        var notifier = new RecordingNotifier();
+        var stateManager = createStateManager(notifier);
+        stateManager.createSession("session", CALLBACK_URL);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int v = 0; v < vatNumbers; v++) {
+            String vatNumber = "BE000" + v;
+            tasks.add(() -> {
+                for (int i = 0; i < perVatNumber; i++) {
+                    stateManager.handleSutMessage(new SutMessage(vatNumber, vatNumber + "-order-" + i));
+                }
+            });
+            tasks.add(() -> {
+                for (int i = 0; i < perVatNumber; i++) {
+                    stateManager.handleReceiveStep(new PendingReceiveStep("session", vatNumber + "-call-" + i, CALLBACK_URL, vatNumber));
+                }
+            });
+        }
+        race(tasks.toArray(Runnable[]::new));
+        List<Notification> notifications = List.copyOf(notifier.notifications);
+        assertEquals(vatNumbers * perVatNumber, notifications.size());
+        // Each step completed once and each message delivered once, always for the step's VAT number.
+        assertEquals(notifications.size(), notifications.stream().map(Notification::callId).distinct().count());
+        assertEquals(notifications.size(), notifications.stream().map(Notification::purchaseOrder).distinct().count());
+        notifications.forEach(notification -> assertEquals(
+                notification.callId().substring(0, notification.callId().indexOf("-call-")),
+                notification.purchaseOrder().substring(0, notification.purchaseOrder().indexOf("-order-"))
+        ));
+        StateSnapshot snapshot = stateManager.snapshot();
+        assertTrue(snapshot.sutMessages().isEmpty());
+        assertTrue(snapshot.sessions().get(0).pendingSteps().isEmpty());
+    }
+
+    /**
+     * Test that a message completes the steps pending in all sessions, but is not parked for later steps of other
+     * sessions.
+     */
+    @Test
+    public void messageCompletesPendingStepsOfAllSessions() throws Exception {
+        for (int i = 0; i < ITERATIONS; i++) {
+            var notifier = new RecordingNotifier();
+            var stateManager = createStateManager(notifier);
+            stateManager.createSession("session1", CALLBACK_URL);
+            stateManager.createSession("session2", CALLBACK_URL);
+            // A step already pending in the first session.
+            stateManager.handleReceiveStep(new PendingReceiveStep("session1", "call-1", CALLBACK_URL, "BE0001"));
+            race(
+                    () -> stateManager.handleSutMessage(new SutMessage("BE0001", "order")),
+                    () -> stateManager.handleReceiveStep(new PendingReceiveStep("session2", "call-2", CALLBACK_URL, "BE0001"))
+            );
+            Map<String, List<Notification>> bySession = notifier.notifications.stream().collect(Collectors.groupingBy(Notification::sessionId));
+            assertEquals(List.of(new Notification("session1", "call-1", "order")), bySession.get("session1"), "Iteration " + i);
+            // The second session's step received the message too if it was pending first, otherwise it remains pending.
+            StateSnapshot snapshot = stateManager.snapshot();
+            List<PendingReceiveStep> session2Steps = snapshot.sessions().stream().filter(session -> session.sessionId().equals("session2")).findFirst().orElseThrow().pendingSteps();
+            if (bySession.containsKey("session2")) {
+                assertEquals(List.of(new Notification("session2", "call-2", "order")), bySession.get("session2"), "Iteration " + i);
+                assertTrue(session2Steps.isEmpty(), "Iteration " + i);
+            } else {
+                assertEquals(List.of("call-2"), session2Steps.stream().map(PendingReceiveStep::callId).toList(), "Iteration " + i);
+            }
+            assertTrue(snapshot.sutMessages().isEmpty(), "Iteration " + i);
+        }
+    }
+
+    /**
+     * Test that a broadcast message shares a single report across sessions, and that a message delivered in first-match
+     * mode only completes the step of the earliest created session.
+     */
+    @Test
+    public void deliveryModes() {
+        for (var deliveryMode: DeliveryMode.values()) {
+            var notifier = new RecordingNotifier();
+            var stateManager = createStateManager(notifier);
+            ReflectionTestUtils.setField(stateManager, "deliveryMode", deliveryMode);
+            for (int i = 1; i <= 3; i++) {
+                stateManager.createSession("session" + i, CALLBACK_URL);
+                stateManager.handleReceiveStep(new PendingReceiveStep("session" + i, "call-" + i, CALLBACK_URL, "BE0001"));
+            }
+            stateManager.handleSutMessage(new SutMessage("BE0001", "order"));
+            StateSnapshot snapshot = stateManager.snapshot();
+            if (deliveryMode == DeliveryMode.FIRST_MATCH) {
+                assertEquals(List.of(new Notification("session1", "call-1", "order")), List.copyOf(notifier.notifications));
+                assertEquals(List.of("call-2", "call-3"), snapshot.sessions().stream().flatMap(session -> session.pendingSteps().stream()).map(PendingReceiveStep::callId).toList());
+            } else {
+                assertEquals(3, notifier.notifications.size());
+                assertEquals(1, notifier.reports.stream().distinct().count());
+                assertTrue(snapshot.sessions().stream().allMatch(session -> session.pendingSteps().isEmpty()));
+            }
+            assertTrue(snapshot.sutMessages().isEmpty());
+        }
+    }
+
+    /**
+     * Test that messages are never lost or duplicated while a session is destroyed concurrently with its steps.
+     */
+    @Test
+    public void destroySessionRacingMessagesAndSteps() throws Exception {
+        int count = 200;
+        for (int i = 0; i < ITERATIONS / 20; i++) {
+            var notifier = new RecordingNotifier();
+            var stateManager = createStateManager(notifier);
+            // A second session keeps messages from being ignored once the first one is destroyed.
+            stateManager.createSession("other", CALLBACK_URL);
+            stateManager.createSession("session", CALLBACK_URL);
+            race(
+                    () -> {
+                        for (int j = 0; j < count; j++) {
+                            stateManager.handleReceiveStep(new PendingReceiveStep("session", "call-" + j, CALLBACK_URL, "BE" + j));
+                        }
+                    },
+                    () -> {
+                        for (int j = 0; j < count; j++) {
+                            stateManager.handleSutMessage(new SutMessage("BE" + j, "order-" + j));
+                        }
+                    },
+                    () -> {
+                        Thread.yield();
+                        stateManager.destroySession("session");
+                    }
+            );
+            List<Notification> notifications = List.copyOf(notifier.notifications);
+            StateSnapshot snapshot = stateManager.snapshot();
+            assertEquals(List.of("other"), snapshot.sessions().stream().map(StateSnapshot.Session::sessionId).toList(), "Iteration " + i);
+            assertTrue(snapshot.sessions().get(0).pendingSteps().isEmpty(), "Iteration " + i);
+            // Steps completed at most once.
+            assertEquals(notifications.size(), notifications.stream().map(Notification::callId).distinct().count(), "Iteration " + i);
+            // Each message either delivered once or parked, never both.
+            Set<String> delivered = notifications.stream().map(Notification::purchaseOrder).collect(Collectors.toSet());
+            assertEquals(notifications.size(), delivered.size(), "Iteration " + i);
+            Set<String> parked = snapshot.sutMessages().stream().map(SutMessage::content).collect(Collectors.toSet());
+            assertEquals(snapshot.sutMessages().size(), parked.size(), "Iteration " + i);
+            Set<String> all = new HashSet<>(delivered);
+            all.addAll(parked);
+            assertEquals(count, all.size(), "Iteration " + i);
+            assertEquals(count, delivered.size() + parked.size(), "Iteration " + i);
+        }
+    }
+
+    /**
+     * Test that a message racing the destruction of the last session is never left parked.
+     */
+    @Test
+    public void destroyLastSessionLeavesNoParkedMessages() throws Exception {
+        for (int i = 0; i < ITERATIONS; i++) {
+            var notifier = new RecordingNotifier();
+            var stateManager = createStateManager(notifier);
+            stateManager.createSession("session", CALLBACK_URL);
+            race(
+                    () -> stateManager.handleSutMessage(new SutMessage("BE0001", "order")),
+                    () -> stateManager.destroySession("session")
+            );
+            StateSnapshot snapshot = stateManager.snapshot();
+            assertTrue(snapshot.sessions().isEmpty(), "Iteration " + i);
+            assertTrue(snapshot.sutMessages().isEmpty(), "Iteration " + i);
+            assertTrue(notifier.notifications.isEmpty(), "Iteration " + i);
+        }
+    }
+
+    /**
+     * Test that a step handled after its session was destroyed is not parked but still consumes a parked message.
+     */
+    @Test
+    public void stepForDestroyedSessionIsNotParked() {
+        var notifier = new RecordingNotifier();
+        var stateManager = createStateManager(notifier);
+        stateManager.createSession("other", CALLBACK_URL);
+        stateManager.createSession("session", CALLBACK_URL);
+        stateManager.destroySession("session");
+        stateManager.handleReceiveStep(new PendingReceiveStep("session", "call-1", CALLBACK_URL, "BE0001"));
+        assertTrue(stateManager.snapshot().sessions().get(0).pendingSteps().isEmpty());
+        stateManager.handleSutMessage(new SutMessage("BE0001", "order"));
+        assertEquals(1, stateManager.snapshot().sutMessages().size());
+        stateManager.handleReceiveStep(new PendingReceiveStep("session", "call-2", CALLBACK_URL, "BE0001"));
+        assertEquals(List.of(new Notification("session", "call-2", "order")), List.copyOf(notifier.notifications));
+        assertTrue(stateManager.snapshot().sutMessages().isEmpty());
+    }
+
+    /**
+     * Create a StateManager outside the Spring context.
+     *
+     * @param notifier The notifier to record the Test Bed notifications with.
+     * @return The StateManager.
+     */
+    private StateManager createStateManager(RecordingNotifier notifier) {
+        var stateManager = new StateManager();
+        ReflectionTestUtils.setField(stateManager, "testBedNotifier", notifier);
+        ReflectionTestUtils.setField(stateManager, "utils", new Utils());
+        return stateManager;
+    }
+
+    /**
+     * Run the provided tasks concurrently, starting them together and waiting for all of them to complete.
+     *
+     * @param tasks The tasks.
+     */
+    private void race(Runnable... tasks) throws Exception {
+        var barrier = new CyclicBarrier(tasks.length);
+        List<Future<?>> futures = new ArrayList<>(tasks.length);
+        for (var task: tasks) {
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                task.run();
+                return null;
+            }));
+        }
+        for (var future: futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A Test Bed notification.
+     *
+     * @param sessionId The notified session.
+     * @param callId The completed 'receive' step's call ID.
+     * @param purchaseOrder The delivered purchase order.
+     */
+    private record Notification(String sessionId, String callId, String purchaseOrder) {
+    }
+
+    /**
+     * TestBedNotifier recording notifications instead of calling the Test Bed.
+     * <p/>
+     * Notifications are recorded synchronously by the thread completing the match, after the StateManager released its
+     * lock.
+     */
+    private static class RecordingNotifier extends TestBedNotifier {
+
+        private final ConcurrentLinkedQueue<Notification> notifications = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<TAR> reports = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public CompletableFuture<Void> notifyTestBed(String sessionId, String callId, String callback, TAR report) {
+            notifications.add(new Notification(sessionId, callId, report.getContext().getItem().get(0).getValue()));
+            reports.add(report);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> sendLogMessage(String sessionId, String callbackAddress, String message, LogLevel level) {
+            // Log messages are not relevant for matching.
+            return CompletableFuture.completedFuture(null);
+        }
+
+    }
+
+}
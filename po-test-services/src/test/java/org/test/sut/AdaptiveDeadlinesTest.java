@@ -0,0 +1,88 @@
+package org.test.sut;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the adaptive deadlines derived from endpoint latencies.
+ */
+public class AdaptiveDeadlinesTest {
+
+    private static final String ENDPOINT = "http://sut:8080/api";
+
+    /**
+     * Create adaptive deadlines with a window long enough for its slices not to advance during a test.
+     *
+     * @param maxTrackedEndpoints The maximum number of tracked endpoints.
+     * @return The adaptive deadlines.
+     */
+    private AdaptiveDeadlines create(int maxTrackedEndpoints) {
+        var deadlines = new AdaptiveDeadlines();
+        ReflectionTestUtils.setField(deadlines, "adaptive", true);
+        ReflectionTestUtils.setField(deadlines, "factor", 3.0);
+        ReflectionTestUtils.setField(deadlines, "minDeadline", 100L);
+        ReflectionTestUtils.setField(deadlines, "maxDeadline", 60000L);
+        ReflectionTestUtils.setField(deadlines, "minSamples", 20);
+        ReflectionTestUtils.setField(deadlines, "hedgePercentile", 95.0);
+        ReflectionTestUtils.setField(deadlines, "window", Duration.ofHours(6).toMillis());
+        ReflectionTestUtils.setField(deadlines, "maxTrackedEndpoints", maxTrackedEndpoints);
+        return deadlines;
+    }
+
+    /**
+     * Test that deadlines and hedge delays are derived once enough latencies were recorded (within the histograms'
+     * precision), and kept until the window advances.
+     */
+    @Test
+    public void estimatesAreDerivedAndCached() {
+        var deadlines = create(10);
+        for (int i = 0; i < 19; i++) {
+            deadlines.record(ENDPOINT, Duration.ofMillis(200));
+        }
+        assertNull(deadlines.hedgeDelayFor(ENDPOINT));
+        assertEquals(Duration.ofMillis(60000), deadlines.timeoutFor(ENDPOINT));
+        deadlines.record(ENDPOINT, Duration.ofMillis(200));
+        long hedgeDelay = deadlines.hedgeDelayFor(ENDPOINT).toMillis();
+        assertTrue(hedgeDelay >= 200 && hedgeDelay <= 200 * 17 / 16, "Unexpected hedge delay " + hedgeDelay);
+        long timeout = deadlines.timeoutFor(ENDPOINT).toMillis();
+        assertTrue(timeout >= 600 && timeout <= 600 * 17 / 16, "Unexpected timeout " + timeout);
+        for (int i = 0; i < 100; i++) {
+            deadlines.record(ENDPOINT, Duration.ofMillis(5000));
+        }
+        assertEquals(hedgeDelay, deadlines.hedgeDelayFor(ENDPOINT).toMillis());
+        assertEquals(timeout, deadlines.timeoutFor(ENDPOINT).toMillis());
+    }
+
+    /**
+     * Test that latencies above the request deadline are tracked as the request deadline.
+     */
+    @Test
+    public void latenciesAreCappedToTheRequestDeadline() {
+        var deadlines = create(10);
+        for (int i = 0; i < 20; i++) {
+            deadlines.record(ENDPOINT, Duration.ofHours(1));
+        }
+        assertEquals(Duration.ofMillis(60000), deadlines.hedgeDelayFor(ENDPOINT));
+        assertEquals(Duration.ofMillis(60000), deadlines.timeoutFor(ENDPOINT));
+    }
+
+    /**
+     * Test that new endpoints are not tracked while no tracked endpoint is idle.
+     */
+    @Test
+    public void trackedEndpointsAreBounded() {
+        var deadlines = create(1);
+        for (int i = 0; i < 20; i++) {
+            deadlines.record(ENDPOINT, Duration.ofMillis(200));
+            deadlines.record("http://other:8080/api", Duration.ofMillis(200));
+        }
+        assertNotNull(deadlines.hedgeDelayFor(ENDPOINT));
+        assertNull(deadlines.hedgeDelayFor("http://other:8080/api"));
+        assertEquals(Duration.ofMillis(60000), deadlines.timeoutFor("http://other:8080/api"));
+    }
+
+}
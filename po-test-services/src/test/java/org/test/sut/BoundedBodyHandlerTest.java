@@ -0,0 +1,173 @@
+package org.test.sut;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the bounded reading of SUT responses, against a local HTTP server.
+ */
+public class BoundedBodyHandlerTest {
+
+    private static final byte[] LARGE_BODY = new byte[100000];
+
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static HttpClient httpClient;
+
+    /**
+     * Start the local server, serving a body per path.
+     */
+    @BeforeAll
+    public static void startServer() throws Exception {
+        new Random(42).nextBytes(LARGE_BODY);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/large", exchange -> {
+            exchange.sendResponseHeaders(200, LARGE_BODY.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(LARGE_BODY);
+            }
+        });
+        server.createContext("/text", exchange -> {
+            String charset = exchange.getRequestURI().getQuery();
+            byte[] body = "abcé-end".getBytes(charset);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=" + charset);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("start".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(5000);
+                out.write("end".getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                // The client gave up on the response.
+            }
+        });
+        server.start();
+        httpClient = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Stop the local server.
+     */
+    @AfterAll
+    public static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Test that a body longer than the capture limit is truncated with a marker, and abandoned when not drained.
+     */
+    @Test
+    public void truncatedBodyHasMarker() {
+        CapturedBody body = get("/large", new BoundedBodyHandler(10, null, false, deadlineIn(5000)));
+        assertTrue(body.truncated());
+        assertTrue(body.text().endsWith(BoundedBodyHandler.TRUNCATION_MARKER.formatted(10)));
+        assertTrue(body.size() > 10 && body.size() <= LARGE_BODY.length);
+        assertNull(body.digest());
+    }
+
+    /**
+     * Test that the digest covers the full body when reading continues past the capture limit.
+     */
+    @Test
+    public void digestCoversDrainedBody() throws Exception {
+        CapturedBody body = get("/large", new BoundedBodyHandler(10, "SHA-256", false, deadlineIn(5000)));
+        assertTrue(body.truncated());
+        assertEquals(LARGE_BODY.length, body.size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(LARGE_BODY)), body.digest());
+    }
+
+    /**
+     * Test that a multibyte character cut by the capture limit is replaced rather than failing the decoding, and that
+     * bodies are decoded with the charset of their content type.
+     */
+    @Test
+    public void bodiesAreDecoded() {
+        // "abc" followed by the first of the two bytes of "é" in UTF-8.
+        CapturedBody cut = get("/text?UTF-8", new BoundedBodyHandler(4, null, false, deadlineIn(5000)));
+        assertEquals("abc\uFFFD" + BoundedBodyHandler.TRUNCATION_MARKER.formatted(4), cut.text());
+        CapturedBody full = get("/text?UTF-8", new BoundedBodyHandler(100, null, false, deadlineIn(5000)));
+        assertEquals("abcé-end", full.text());
+        assertFalse(full.truncated());
+        CapturedBody latin1 = get("/text?ISO-8859-1", new BoundedBodyHandler(100, null, false, deadlineIn(5000)));
+        assertEquals("abcé-end", latin1.text());
+        assertEquals(8, latin1.size());
+    }
+
+    /**
+     * Test that reading a body stops at the deadline.
+     */
+    @Test
+    public void readingStopsAtDeadline() {
+        long start = System.nanoTime();
+        var request = HttpRequest.newBuilder(URI.create(baseUrl() + "/slow")).build();
+        var error = assertThrows(CompletionException.class, () -> httpClient.sendAsync(request, new BoundedBodyHandler(100, null, true, deadlineIn(300))).join());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000);
+        Throwable cause = error;
+        while (cause != null && !(cause instanceof TimeoutException)) {
+            cause = cause.getCause();
+        }
+        assertNotNull(cause, "Expected a timeout but got " + error);
+    }
+
+    /**
+     * Get a path from the local server.
+     *
+     * @param path The path.
+     * @param handler The body handler.
+     * @return The captured body.
+     */
+    private CapturedBody get(String path, BoundedBodyHandler handler) {
+        var request = HttpRequest.newBuilder(URI.create(baseUrl() + path)).timeout(Duration.ofSeconds(5)).build();
+        return httpClient.sendAsync(request, handler).join().body();
+    }
+
+    /**
+     * Get the local server's base URL.
+     *
+     * @return The URL.
+     */
+    private String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Calculate a deadline.
+     *
+     * @param millis The milliseconds from now.
+     * @return The deadline (as per System.nanoTime).
+     */
+    private long deadlineIn(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+}
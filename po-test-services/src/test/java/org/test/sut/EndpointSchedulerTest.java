@@ -0,0 +1,53 @@
+package org.test.sut;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the scheduling of outbound calls per SUT host.
+ */
+public class EndpointSchedulerTest {
+
+    private static final int CALLS = 2000;
+    private static final int MAX_IN_FLIGHT = 2;
+
+    /**
+     * Test that a host's limit holds while its queue is repeatedly removed and recreated, and that idle hosts are
+     * no longer tracked.
+     */
+    @Test
+    public void limitHoldsAndIdleHostsAreRemoved() throws Exception {
+        var scheduler = new EndpointScheduler();
+        ReflectionTestUtils.setField(scheduler, "maxInFlight", MAX_IN_FLIGHT);
+        var inFlight = new AtomicInteger();
+        var maxObserved = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < CALLS; i++) {
+                String sessionId = "session" + (i % 3);
+                results.add(CompletableFuture.supplyAsync(() -> scheduler.submit("http://sut:8080/api", sessionId, waited -> {
+                    maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return CompletableFuture.supplyAsync(() -> inFlight.decrementAndGet(), executor);
+                }), executor).thenCompose(result -> result));
+            }
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(maxObserved.get() <= MAX_IN_FLIGHT, "Observed " + maxObserved.get() + " calls in flight");
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(scheduler, "hosts")).isEmpty());
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.test.sut;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the log-linear latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Test that values within the first two half-ranges (below 2 x 128 with the default layout) are tracked exactly.
+     */
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 0; value < 256; value++) {
+            var histogram = new LatencyHistogram();
+            histogram.record(value);
+            assertEquals(value, histogram.getValueAtPercentile(100), "Value " + value);
+        }
+    }
+
+    /**
+     * Test the bucket boundaries around powers of two: a bucket's highest value and the next value fall in different
+     * buckets, and values within a bucket are reported as the bucket's highest value.
+     */
+    @Test
+    public void bucketBoundaries() {
+        // From 256 to 511, sub-buckets have a width of 2.
+        assertEquals(257, reportedValueOf(256, 257));
+        assertEquals(259, reportedValueOf(258, 259));
+        assertEquals(511, reportedValueOf(510, 511));
+        // From 512 to 1023, sub-buckets have a width of 4.
+        assertEquals(515, reportedValueOf(512, 1000));
+        assertEquals(1023, reportedValueOf(1020, 1023));
+        // Values of adjacent buckets are not merged.
+        var histogram = new LatencyHistogram();
+        histogram.record(511);
+        histogram.record(512);
+        assertEquals(511, histogram.getValueAtPercentile(50));
+        assertEquals(512, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Test that percentiles are within the layout's relative error of the exact percentiles of random values.
+     */
+    @Test
+    public void percentilesAreAccurate() {
+        var random = new Random(42);
+        long[] values = new long[100000];
+        var histogram = new LatencyHistogram();
+        var coarse = new LatencyHistogram(4, 60000);
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform values from 1 to about 10^7.
+            values[i] = (long) Math.exp(random.nextDouble() * 16);
+            histogram.record(values[i]);
+            coarse.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile: new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported <= exact + exact / 128, String.format("p%s: %s vs %s", percentile, reported, exact));
+            if (exact < 60000) {
+                long coarseReported = coarse.getValueAtPercentile(percentile);
+                assertTrue(coarseReported >= exact && coarseReported <= exact + exact / 16, String.format("coarse p%s: %s vs %s", percentile, coarseReported, exact));
+            }
+        }
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(Arrays.stream(values).average().orElseThrow(), histogram.getMean(), 0.001);
+    }
+
+    /**
+     * Test that values above the highest trackable value are recorded as that value, and negative values as zero.
+     */
+    @Test
+    public void valuesAreClamped() {
+        var histogram = new LatencyHistogram(4, 1000);
+        histogram.record(-5);
+        histogram.record(5000);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(1000, histogram.getMax());
+    }
+
+    /**
+     * Test that histograms are merged and reset, and that only histograms with the same layout can be merged.
+     */
+    @Test
+    public void addAndReset() {
+        var first = new LatencyHistogram();
+        var second = new LatencyHistogram();
+        first.record(10);
+        second.record(20);
+        second.record(30);
+        first.add(second);
+        assertEquals(3, first.getTotalCount());
+        assertEquals(30, first.getMax());
+        assertEquals(20, first.getValueAtPercentile(50));
+        first.reset();
+        assertEquals(0, first.getTotalCount());
+        assertEquals(0, first.getValueAtPercentile(99));
+        assertThrows(IllegalArgumentException.class, () -> first.add(new LatencyHistogram(4, 60000)));
+    }
+
+    /**
+     * Get the value reported for a recorded value.
+     * <p/>
+     * A higher value is also recorded so that the reported value is not capped to the highest recorded value.
+     *
+     * @param value The recorded value.
+     * @param higherValue The higher value.
+     * @return The value reported at the 50th percentile.
+     */
+    private long reportedValueOf(long value, long higherValue) {
+        var histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(higherValue);
+        return histogram.getValueAtPercentile(50);
+    }
+
+}
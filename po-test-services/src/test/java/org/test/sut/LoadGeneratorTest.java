@@ -0,0 +1,100 @@
+package org.test.sut;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the generation of rate-controlled load.
+ */
+public class LoadGeneratorTest {
+
+    private static final String ENDPOINT = "http://sut:8080/api";
+
+    /**
+     * Test that latencies are measured from each request's scheduled start, so that the time requests wait for the
+     * concurrency limit behind a slow SUT is included (no coordinated omission).
+     */
+    @Test
+    public void latenciesIncludeSchedulingDelays() {
+        // 20 requests scheduled 5 ms apart, served one at a time in 20 ms each.
+        var generator = createGenerator(new DelayingDispatcher(20));
+        LoadResult result = generator.run(new LoadProfile(List.of(ENDPOINT), List.of(OrderPayload.of("order")), 200, Duration.ofMillis(100), 1));
+
+        assertEquals(20, result.requests());
+        assertEquals(20, result.latencies().getTotalCount());
+        assertEquals(20L, result.statusCounts().get(200));
+        // The last request is scheduled at 95 ms but only completes after all 20 requests were served (400 ms).
+        long maxMillis = TimeUnit.MICROSECONDS.toMillis(result.latencies().getMax());
+        assertTrue(maxMillis >= 300, "Unexpected maximum latency " + maxMillis);
+        assertTrue(TimeUnit.MICROSECONDS.toMillis(result.latencies().getValueAtPercentile(50)) >= 100);
+        assertTrue(result.elapsed().toMillis() >= 400);
+    }
+
+    /**
+     * Test that runs exceeding the configured limits are rejected before sending anything.
+     */
+    @Test
+    public void limitsAreEnforced() {
+        var dispatcher = new DelayingDispatcher(0);
+        var generator = createGenerator(dispatcher);
+        List<OrderPayload> payloads = List.of(OrderPayload.of("order"));
+        // Too long (one request every hour for a day).
+        assertThrows(IllegalArgumentException.class, () -> generator.run(new LoadProfile(List.of(ENDPOINT), payloads, 1.0 / 3600, Duration.ofDays(1), 1)));
+        // Too many requests.
+        assertThrows(IllegalArgumentException.class, () -> generator.run(new LoadProfile(List.of(ENDPOINT), payloads, 1000, Duration.ofSeconds(2), 1)));
+        // No requests.
+        assertThrows(IllegalArgumentException.class, () -> generator.run(new LoadProfile(List.of(ENDPOINT), payloads, 1, Duration.ofMillis(500), 1)));
+        assertEquals(0, dispatcher.calls);
+    }
+
+    /**
+     * Create a load generator.
+     *
+     * @param dispatcher The dispatcher to send requests with.
+     * @return The generator.
+     */
+    private LoadGenerator createGenerator(SutDispatcher dispatcher) {
+        var generator = new LoadGenerator();
+        ReflectionTestUtils.setField(generator, "maxConcurrency", 16);
+        ReflectionTestUtils.setField(generator, "maxRequests", 1000L);
+        ReflectionTestUtils.setField(generator, "maxDuration", 60000L);
+        ReflectionTestUtils.setField(generator, "sutDispatcher", dispatcher);
+        return generator;
+    }
+
+    /**
+     * SutDispatcher answering each call with a 200 status after a fixed delay, instead of calling a SUT.
+     */
+    private static class DelayingDispatcher extends SutDispatcher {
+
+        private final long delay;
+        private volatile int calls = 0;
+
+        /**
+         * Constructor.
+         *
+         * @param delay The delay in milliseconds.
+         */
+        DelayingDispatcher(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public CompletableFuture<SutResult> sendAsync(SutCall call, boolean capturePayload) {
+            calls++;
+            return CompletableFuture.supplyAsync(
+                    () -> new SutResult(call, 200, null, null, Duration.ZERO, Duration.ofMillis(delay), Duration.ofMillis(60000), 1),
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+            );
+        }
+
+    }
+
+}
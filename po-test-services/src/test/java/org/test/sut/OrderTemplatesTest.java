@@ -0,0 +1,103 @@
+package org.test.sut;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the generation of purchase orders from templates.
+ */
+public class OrderTemplatesTest {
+
+    private final OrderTemplates templates = new OrderTemplates(4, 2, 5000);
+
+    /**
+     * Stop the rendering threads.
+     */
+    @AfterEach
+    public void destroy() {
+        templates.destroy();
+    }
+
+    /**
+     * Test that a template is rendered with its parameters into the request body.
+     */
+    @Test
+    public void templateIsRendered() throws Exception {
+        var payload = templates.payloadFor("<order id=\"${id}\"><#list 1..3000 as i><line>${i?c}</line></#list></order>", Map.of("id", "PO-1"));
+        String body = read(payload);
+        assertTrue(body.startsWith("<order id=\"PO-1\"><line>1</line>"));
+        assertTrue(body.endsWith("<line>3000</line></order>"));
+    }
+
+    /**
+     * Test that templates cannot instantiate Java classes (which would allow running OS commands).
+     */
+    @Test
+    public void classInstantiationIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> templates.payloadFor("<#assign ex = \"freemarker.template.utility.Execute\"?new()>${ex(\"id\")}", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> templates.payloadFor("${\"freemarker.template.utility.ObjectConstructor\"?new()(\"java.io.File\", \"/\")}", Map.of()));
+    }
+
+    /**
+     * Test that the "api" built-in is disabled.
+     */
+    @Test
+    public void apiBuiltInIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> templates.payloadFor("${values?api.size()}", Map.of("values", Map.of("a", "b"))));
+    }
+
+    /**
+     * Test that templates that cannot be rendered with their parameters are rejected before anything is sent.
+     */
+    @Test
+    public void renderingErrorsAreRejectedUpFront() {
+        assertThrows(IllegalArgumentException.class, () -> templates.payloadFor("<order id=\"${id}\"/>", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> templates.payloadFor("<order id=\"${id\"/>", Map.of()));
+    }
+
+    /**
+     * Read the body published by a payload.
+     *
+     * @param payload The payload.
+     * @return The body.
+     */
+    private String read(OrderPayload payload) throws Exception {
+        var content = new ByteArrayOutputStream();
+        var done = new CompletableFuture<String>();
+        payload.bodyPublisher().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                content.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(content.toString(StandardCharsets.UTF_8));
+            }
+        });
+        return done.get(10, TimeUnit.SECONDS);
+    }
+
+}